@@ -27,14 +27,13 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.napile.asm.lib.NapileAnnotationPackage;
 import org.napile.asm.lib.NapileLangPackage;
-import org.napile.compiler.lang.descriptors.MethodDescriptor;
 import org.napile.compiler.lang.descriptors.MutableClassDescriptor;
 import org.napile.compiler.lang.lexer.NapileTokens;
 import org.napile.compiler.lang.psi.*;
-import org.napile.compiler.lang.resolve.AnnotationUtils;
 import org.napile.compiler.lang.resolve.DescriptorUtils;
-import org.napile.compiler.util.RunUtil;
+import org.napile.idea.plugin.caches.NapileAnnotationSearch;
 import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
+import org.napile.idea.plugin.util.IdePsiUtil;
 
 import javax.swing.*;
 
@@ -93,24 +92,19 @@ public class NapileIconProvider implements IconDescriptorUpdater
 
 				if(napileClass.hasModifier(NapileTokens.UTIL_KEYWORD))
 					icon = NapileIcons.UTIL;
+			}
 
-				if(AnnotationUtils.isAnnotation(descriptor))
-				{
-					icon = NapileIcons.ANNOTATION;
-					if(AnnotationUtils.hasAnnotation(descriptor, NapileAnnotationPackage.REPEATABLE))
-						icon = NapileIcons.REPEATABLE_ANNOTATION;
-				}
+			if(NapileAnnotationSearch.isAnnotatedBy(napileClass, NapileAnnotationPackage.ANNOTATION))
+			{
+				icon = NapileIcons.ANNOTATION;
+				if(NapileAnnotationSearch.isAnnotatedBy(napileClass, NapileAnnotationPackage.REPEATABLE))
+					icon = NapileIcons.REPEATABLE_ANNOTATION;
+			}
 
-				if(DescriptorUtils.isSubclassOf(descriptor, NapileLangPackage.EXCEPTION))
-					icon = napileClass.hasModifier(NapileTokens.ABSTRACT_KEYWORD) ? NapileIcons.ABSTRACT_THROWABLE : NapileIcons.THROWABLE;
+			if(descriptor != null && DescriptorUtils.isSubclassOf(descriptor, NapileLangPackage.EXCEPTION))
+				icon = napileClass.hasModifier(NapileTokens.ABSTRACT_KEYWORD) ? NapileIcons.ABSTRACT_THROWABLE : NapileIcons.THROWABLE;
 
-				for(MethodDescriptor m : descriptor.getMethods())
-					if(RunUtil.isRunPoint(m))
-					{
-						isRunnable = true;
-						break;
-					}
-			}
+			isRunnable = IdePsiUtil.hasRunMethod(napileClass);
 		}
 		else if(psiElement instanceof NapileVariable || psiElement instanceof NapileCallParameterAsVariable)
 		{
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.actions;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.napile.idea.plugin.module.statistics.AnalyzeStatistics;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.io.FileUtil;
+
+/**
+ * Writes metrics of last module analyzes to json file in log directory
+ *
+ * @author VISTALL
+ * @since 17:45/30.04.13
+ */
+public class DumpAnalyzeStatisticsAction extends AnAction
+{
+	@Override
+	public void actionPerformed(AnActionEvent e)
+	{
+		Project project = e.getData(PlatformDataKeys.PROJECT);
+		assert project != null;
+
+		File file = new File(PathManager.getLogPath(), "napile-analyze-statistics-" + System.currentTimeMillis() + ".json");
+		try
+		{
+			FileUtil.writeToFile(file, AnalyzeStatistics.getInstance(project).toJson());
+
+			Messages.showInfoMessage(project, "Analyze statistics is written to " + file.getPath(), "Napile");
+		}
+		catch(IOException ex)
+		{
+			Messages.showErrorDialog(project, "Failed to write analyze statistics: " + ex.getMessage(), "Napile");
+		}
+	}
+
+	@Override
+	public void update(AnActionEvent e)
+	{
+		Project project = e.getData(PlatformDataKeys.PROJECT);
+		e.getPresentation().setEnabled(project != null);
+	}
+}
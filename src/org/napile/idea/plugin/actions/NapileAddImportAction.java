@@ -22,10 +22,9 @@ import java.util.List;
 import javax.swing.Icon;
 
 import org.jetbrains.annotations.NotNull;
-import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
+import org.napile.asm.resolve.name.FqName;
 import org.napile.compiler.lang.psi.NapileFile;
 import org.napile.compiler.lang.psi.NapileNamedDeclaration;
-import org.napile.compiler.lang.resolve.DescriptorUtils;
 import org.napile.idea.plugin.NapileBundle;
 import org.napile.idea.plugin.quickfix.ImportInsertHelper;
 import com.intellij.codeInsight.hint.QuestionAction;
@@ -53,7 +52,7 @@ public class NapileAddImportAction implements QuestionAction
 	private final Project myProject;
 	private final Editor myEditor;
 	private final PsiElement myElement;
-	private final List<Pair<DeclarationDescriptor, NapileNamedDeclaration>> possibleImports;
+	private final List<Pair<FqName, NapileNamedDeclaration>> possibleImports;
 
 	/**
 	 * @param project Project where action takes place.
@@ -61,7 +60,7 @@ public class NapileAddImportAction implements QuestionAction
 	 * @param element Element with unresolved reference.
 	 * @param imports Variants for resolution.
 	 */
-	public NapileAddImportAction(@NotNull Project project, @NotNull Editor editor, @NotNull PsiElement element, @NotNull List<Pair<DeclarationDescriptor, NapileNamedDeclaration>> imports)
+	public NapileAddImportAction(@NotNull Project project, @NotNull Editor editor, @NotNull PsiElement element, @NotNull List<Pair<FqName, NapileNamedDeclaration>> imports)
 	{
 		myProject = project;
 		myEditor = editor;
@@ -93,7 +92,7 @@ public class NapileAddImportAction implements QuestionAction
 
 	protected BaseListPopupStep getImportSelectionPopup()
 	{
-		return new BaseListPopupStep<Pair<DeclarationDescriptor, NapileNamedDeclaration>>(NapileBundle.message("imports.chooser.title"), possibleImports)
+		return new BaseListPopupStep<Pair<FqName, NapileNamedDeclaration>>(NapileBundle.message("imports.chooser.title"), possibleImports)
 		{
 			@Override
 			public boolean isAutoSelectionEnabled()
@@ -102,7 +101,7 @@ public class NapileAddImportAction implements QuestionAction
 			}
 
 			@Override
-			public PopupStep onChosen(Pair<DeclarationDescriptor, NapileNamedDeclaration> selectedValue, boolean finalChoice)
+			public PopupStep onChosen(Pair<FqName, NapileNamedDeclaration> selectedValue, boolean finalChoice)
 			{
 				if(selectedValue == null)
 				{
@@ -115,7 +114,7 @@ public class NapileAddImportAction implements QuestionAction
 					return FINAL_CHOICE;
 				}
 
-				List<String> toExclude = Collections.emptyList();//AddImportAction.getAllExcludableStrings(DescriptorUtils.getFQName(selectedValue.getFirst()).getFqName());
+				List<String> toExclude = Collections.emptyList();//AddImportAction.getAllExcludableStrings(selectedValue.getFirst().getFqName());
 
 				return new BaseListPopupStep<String>(null, toExclude)
 				{
@@ -140,27 +139,27 @@ public class NapileAddImportAction implements QuestionAction
 			}
 
 			@Override
-			public boolean hasSubstep(Pair<DeclarationDescriptor, NapileNamedDeclaration> selectedValue)
+			public boolean hasSubstep(Pair<FqName, NapileNamedDeclaration> selectedValue)
 			{
 				return true;
 			}
 
 			@NotNull
 			@Override
-			public String getTextFor(Pair<DeclarationDescriptor, NapileNamedDeclaration> value)
+			public String getTextFor(Pair<FqName, NapileNamedDeclaration> value)
 			{
-				return DescriptorUtils.getFQName(value.getFirst()).getFqName();
+				return value.getFirst().getFqName();
 			}
 
 			@Override
-			public Icon getIconFor(Pair<DeclarationDescriptor, NapileNamedDeclaration> value)
+			public Icon getIconFor(Pair<FqName, NapileNamedDeclaration> value)
 			{
 				return IconDescriptorUpdaters.getIcon(value.getSecond(), 0);
 			}
 		};
 	}
 
-	protected static void addImport(final PsiElement element, final Project project, final Pair<DeclarationDescriptor, NapileNamedDeclaration> selectedImport)
+	protected static void addImport(final PsiElement element, final Project project, final Pair<FqName, NapileNamedDeclaration> selectedImport)
 	{
 		PsiDocumentManager.getInstance(project).commitAllDocuments();
 
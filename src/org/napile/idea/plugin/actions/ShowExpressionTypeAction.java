@@ -18,7 +18,6 @@ package org.napile.idea.plugin.actions;
 
 import org.napile.compiler.lang.NapileLanguage;
 import org.napile.compiler.lang.resolve.BindingTraceKeys;
-import org.napile.compiler.lang.resolve.BindingTrace;
 import org.napile.compiler.lang.types.NapileType;
 import org.napile.compiler.lang.psi.NapileExpression;
 import org.napile.compiler.lang.psi.NapileFile;
@@ -45,7 +44,6 @@ public class ShowExpressionTypeAction extends AnAction
 		PsiFile psiFile = e.getData(LangDataKeys.PSI_FILE);
 		assert editor != null && psiFile != null;
 		NapileExpression expression;
-		BindingTrace bindingContext = ModuleAnalyzerUtil.lastAnalyze((NapileFile) psiFile).getBindingTrace();
 		if(editor.getSelectionModel().hasSelection())
 		{
 			int startOffset = editor.getSelectionModel().getSelectionStart();
@@ -56,7 +54,7 @@ public class ShowExpressionTypeAction extends AnAction
 		{
 			int offset = editor.getCaretModel().getOffset();
 			expression = PsiTreeUtil.getParentOfType(psiFile.findElementAt(offset), NapileExpression.class);
-			while(expression != null && bindingContext.get(BindingTraceKeys.EXPRESSION_TYPE, expression) == null)
+			while(expression != null && ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.EXPRESSION_TYPE, expression) == null)
 			{
 				expression = PsiTreeUtil.getParentOfType(expression, NapileExpression.class);
 			}
@@ -67,7 +65,7 @@ public class ShowExpressionTypeAction extends AnAction
 		}
 		if(expression != null)
 		{
-			NapileType type = bindingContext.get(BindingTraceKeys.EXPRESSION_TYPE, expression);
+			NapileType type = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.EXPRESSION_TYPE, expression);
 			if(type != null)
 			{
 				HintManager.getInstance().showInformationHint(editor, type.toString());
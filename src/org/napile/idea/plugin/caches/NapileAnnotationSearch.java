@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.caches;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.compiler.lang.psi.NapileAnnotation;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.psi.NapileModifierList;
+import org.napile.compiler.lang.psi.NapileModifierListOwner;
+import org.napile.idea.plugin.stubindex.NapileAnnotationIndex;
+import org.napile.idea.plugin.stubindex.NapileRunPointIndex;
+import com.intellij.openapi.progress.ProgressIndicatorProvider;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.FileBasedIndex;
+
+/**
+ * Search of annotated declarations and run points by {@link NapileAnnotationIndex} and {@link NapileRunPointIndex}.
+ * Annotations are checked by psi - by qualifier, package of file and imports, analyze is not required
+ *
+ * @author VISTALL
+ * @since 14:20/04.05.13
+ */
+public class NapileAnnotationSearch
+{
+	/**
+	 * @return declarations in scope, which are annotated by annotation
+	 */
+	@NotNull
+	public static List<NapileModifierListOwner> findAnnotated(@NotNull Project project, @NotNull FqName annotationFqName, @NotNull GlobalSearchScope scope)
+	{
+		Collection<VirtualFile> files = FileBasedIndex.getInstance().getContainingFiles(NapileAnnotationIndex.NAME, annotationFqName.getFqName(), scope);
+		if(files.isEmpty())
+			return Collections.emptyList();
+
+		PsiManager psiManager = PsiManager.getInstance(project);
+
+		List<NapileModifierListOwner> result = new ArrayList<NapileModifierListOwner>();
+		for(VirtualFile virtualFile : files)
+		{
+			ProgressIndicatorProvider.checkCanceled();
+
+			PsiFile psiFile = psiManager.findFile(virtualFile);
+			if(!(psiFile instanceof NapileFile))
+				continue;
+
+			for(NapileModifierListOwner owner : PsiTreeUtil.findChildrenOfType(psiFile, NapileModifierListOwner.class))
+			{
+				if(isAnnotatedBy(owner, (NapileFile) psiFile, annotationFqName))
+					result.add(owner);
+			}
+		}
+		return result;
+	}
+
+	public static boolean isAnnotatedBy(@NotNull NapileModifierListOwner owner, @NotNull FqName annotationFqName)
+	{
+		PsiFile psiFile = owner.getContainingFile();
+		VirtualFile virtualFile = psiFile.getVirtualFile();
+		if(!(psiFile instanceof NapileFile) || virtualFile == null || DumbService.isDumb(owner.getProject()))
+			return false;
+
+		if(FileBasedIndex.getInstance().getContainingFiles(NapileAnnotationIndex.NAME, annotationFqName.getFqName(), GlobalSearchScope.fileScope(owner.getProject(), virtualFile)).isEmpty())
+			return false;
+
+		return isAnnotatedBy(owner, (NapileFile) psiFile, annotationFqName);
+	}
+
+	/**
+	 * @return true if class with this name have run point in file, analyze is not required
+	 */
+	public static boolean hasRunPoint(@NotNull Project project, @NotNull FqName classFqName, @NotNull VirtualFile virtualFile)
+	{
+		if(DumbService.isDumb(project))
+			return false;
+
+		return !FileBasedIndex.getInstance().getContainingFiles(NapileRunPointIndex.NAME, classFqName.getFqName(), GlobalSearchScope.fileScope(project, virtualFile)).isEmpty();
+	}
+
+	/**
+	 * @return names of all classes in scope, which have run point
+	 */
+	@NotNull
+	public static List<FqName> findRunnableClasses(@NotNull Project project, @NotNull GlobalSearchScope scope)
+	{
+		FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+
+		List<FqName> result = new ArrayList<FqName>();
+		for(String key : fileBasedIndex.getAllKeys(NapileRunPointIndex.NAME, project))
+		{
+			ProgressIndicatorProvider.checkCanceled();
+
+			if(!fileBasedIndex.getContainingFiles(NapileRunPointIndex.NAME, key, scope).isEmpty())
+				result.add(new FqName(key));
+		}
+		return result;
+	}
+
+	private static boolean isAnnotatedBy(@NotNull NapileModifierListOwner owner, @NotNull NapileFile file, @NotNull FqName annotationFqName)
+	{
+		NapileModifierList modifierList = owner.getModifierList();
+		if(modifierList == null)
+			return false;
+
+		for(NapileAnnotation annotation : modifierList.getAnnotations())
+		{
+			if(NapileAnnotationIndex.getAnnotationFqNames(annotation, file).contains(annotationFqName.getFqName()))
+				return true;
+		}
+		return false;
+	}
+}
@@ -18,32 +18,32 @@ package org.napile.idea.plugin.caches;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.asm.resolve.name.FqName;
-import org.napile.compiler.lang.descriptors.ClassDescriptor;
-import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
-import org.napile.compiler.lang.descriptors.SimpleMethodDescriptor;
 import org.napile.compiler.lang.psi.NapileClass;
-import org.napile.compiler.lang.psi.NapileClassLike;
 import org.napile.compiler.lang.psi.NapileFile;
 import org.napile.compiler.lang.psi.NapileNamedDeclaration;
-import org.napile.compiler.lang.psi.NapileNamedMethodOrMacro;
-import org.napile.compiler.lang.resolve.BindingTraceKeys;
-import org.napile.compiler.lang.resolve.BindingTrace;
-import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
 import org.napile.idea.plugin.stubindex.NapileFullClassNameIndex;
+import org.napile.idea.plugin.stubindex.NapilePackageIndex;
 import org.napile.idea.plugin.stubindex.NapileShortClassNameIndex;
-import org.napile.idea.plugin.stubindex.NapileShortMethodNameIndex;
+import org.napile.idea.plugin.stubindex.NapileSourceFilterScope;
+import org.napile.idea.plugin.stubindex.NapileStaticDeclarationIndex;
+import org.napile.idea.plugin.stubindex.NapileSubPackageIndex;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.module.ModuleUtil;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.util.Pair;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.indexing.FileBasedIndex;
 
 /**
  * @author VISTALL
@@ -86,41 +86,58 @@ public class NapileClassResolver
 		return classOrObjects.isEmpty() ? NapileClass.EMPTY_ARRAY : classOrObjects.toArray(NapileClass.EMPTY_ARRAY);
 	}
 
-	public List<Pair<DeclarationDescriptor, NapileNamedDeclaration>> getDescriptorsForImport(@NotNull Condition<String> acceptedShortNameCondition, @NotNull NapileFile napileFile)
+	@NotNull
+	public NapileClass[] getClassesByPackage(@NotNull FqName packageFqName, @NotNull GlobalSearchScope scope)
+	{
+		Collection<NapileClass> classes = NapilePackageIndex.getInstance().get(packageFqName.getFqName(), project, scope);
+
+		return classes.isEmpty() ? NapileClass.EMPTY_ARRAY : classes.toArray(NapileClass.EMPTY_ARRAY);
+	}
+
+	/**
+	 * @return short names of direct sub packages
+	 */
+	@NotNull
+	public Set<String> getSubPackageNames(@NotNull FqName packageFqName, @NotNull GlobalSearchScope scope)
+	{
+		Set<String> names = new TreeSet<String>();
+		for(List<String> list : FileBasedIndex.getInstance().getValues(NapileSubPackageIndex.NAME, packageFqName.getFqName(), new NapileSourceFilterScope(scope)))
+			names.addAll(list);
+		return names;
+	}
+
+	/**
+	 * @return static top level classes, methods and macros with this short name, which can be imported to file
+	 */
+	@NotNull
+	public List<Pair<FqName, NapileNamedDeclaration>> getDeclarationsForImport(@NotNull String shortName, @NotNull NapileFile napileFile)
 	{
-		BindingTrace context = ModuleAnalyzerUtil.lastAnalyze(napileFile).getBindingTrace();
-		List<Pair<DeclarationDescriptor, NapileNamedDeclaration>> map = new ArrayList<Pair<DeclarationDescriptor, NapileNamedDeclaration>>();
+		List<Pair<FqName, NapileNamedDeclaration>> map = new ArrayList<Pair<FqName, NapileNamedDeclaration>>();
 		GlobalSearchScope scope = GlobalSearchScope.moduleWithLibrariesScope(ModuleUtil.findModuleForPsiElement(napileFile));
 
-		for(String fqName : NapileFullClassNameIndex.getInstance().getAllKeys(project))
+		Set<FqName> processed = new HashSet<FqName>();
+		for(NapileNamedDeclaration declaration : NapileStaticDeclarationIndex.getInstance().get(shortName, project, scope))
 		{
-			FqName classFQName = new FqName(fqName);
-			if(!classFQName.isRoot() && acceptedShortNameCondition.value(classFQName.shortName().getName()))
-			{
-				Collection<NapileClass> list = NapileFullClassNameIndex.getInstance().get(fqName, project, scope);
-				for(NapileClassLike classLike : list)
-				{
-					ClassDescriptor classDescriptor = context.get(BindingTraceKeys.CLASS, classLike);
-					if(classDescriptor != null && classDescriptor.isStatic())
-						map.add(new Pair<DeclarationDescriptor, NapileNamedDeclaration>(classDescriptor, classLike));
-				}
-			}
-		}
+			// overloaded methods have same import
+			FqName fqName = getFqName(declaration);
+			if(fqName == null || !processed.add(fqName))
+				continue;
 
-		for(String name : NapileShortMethodNameIndex.getInstance().getAllKeys(project))
-		{
-			if(acceptedShortNameCondition.value(name))
-			{
-				Collection<NapileNamedMethodOrMacro> list = NapileShortMethodNameIndex.getInstance().get(name, project, scope);
-				for(NapileNamedMethodOrMacro method : list)
-				{
-					SimpleMethodDescriptor methodDescriptor = context.get(BindingTraceKeys.METHOD, method);
-					if(methodDescriptor != null && methodDescriptor.isStatic())
-						map.add(new Pair<DeclarationDescriptor, NapileNamedDeclaration>(methodDescriptor, method));
-				}
-			}
+			map.add(new Pair<FqName, NapileNamedDeclaration>(fqName, declaration));
 		}
 
 		return map;
 	}
+
+	@Nullable
+	private static FqName getFqName(@NotNull NapileNamedDeclaration declaration)
+	{
+		if(declaration instanceof NapileClass)
+			return ((NapileClass) declaration).getFqName();
+
+		NapileClass napileClass = PsiTreeUtil.getStubOrPsiParentOfType(declaration, NapileClass.class);
+		FqName classFqName = napileClass == null ? null : napileClass.getFqName();
+		String name = declaration.getName();
+		return classFqName == null || name == null ? null : new FqName(classFqName.getFqName() + "." + name);
+	}
 }
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.caches;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.lib.NapileLangPackage;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.lang.descriptors.CallableMemberDescriptor;
+import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
+import org.napile.compiler.lang.lexer.NapileTokens;
+import org.napile.compiler.lang.psi.NapileCallParameter;
+import org.napile.compiler.lang.psi.NapileCallParameterAsVariable;
+import org.napile.compiler.lang.psi.NapileClass;
+import org.napile.compiler.lang.psi.NapileClassLike;
+import org.napile.compiler.lang.psi.NapileDeclaration;
+import org.napile.compiler.lang.psi.NapileExpression;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.psi.NapileImportDirective;
+import org.napile.compiler.lang.psi.NapileMethod;
+import org.napile.compiler.lang.psi.NapileSuperListOwner;
+import org.napile.compiler.lang.psi.NapileTypeElement;
+import org.napile.compiler.lang.psi.NapileTypeParameter;
+import org.napile.compiler.lang.psi.NapileTypeParameterListOwner;
+import org.napile.compiler.lang.psi.NapileTypeReference;
+import org.napile.compiler.lang.psi.NapileUserType;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.lang.resolve.BindingTraceUtil;
+import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
+import org.napile.idea.plugin.stubindex.NapileDirectInheritorsIndex;
+import org.napile.idea.plugin.stubindex.NapileSourceFilterScope;
+import com.intellij.openapi.progress.ProgressIndicatorProvider;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.CommonProcessors;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.FileBasedIndex;
+
+/**
+ * Search of inheritors by {@link NapileDirectInheritorsIndex}. Super type references are checked by psi - by qualifier,
+ * package of file and imports, analyze is not required
+ *
+ * @author VISTALL
+ * @since 11:05/03.05.13
+ */
+public class NapileInheritorsSearch
+{
+	/**
+	 * @return classes, anonym classes and enum values, which are extends class directly
+	 */
+	@NotNull
+	public static List<NapileSuperListOwner> findDirectInheritors(@NotNull NapileClass napileClass, @NotNull GlobalSearchScope scope)
+	{
+		CommonProcessors.CollectProcessor<NapileSuperListOwner> processor = new CommonProcessors.CollectProcessor<NapileSuperListOwner>();
+		processDirectInheritors(napileClass, scope, processor);
+		return new ArrayList<NapileSuperListOwner>(processor.getResults());
+	}
+
+	/**
+	 * Search is stopped at first found inheritor - only files before it are parsed
+	 */
+	public static boolean hasDirectInheritors(@NotNull NapileClass napileClass, @NotNull GlobalSearchScope scope)
+	{
+		CommonProcessors.FindFirstProcessor<NapileSuperListOwner> processor = new CommonProcessors.FindFirstProcessor<NapileSuperListOwner>();
+		processDirectInheritors(napileClass, scope, processor);
+		return processor.isFound();
+	}
+
+	/**
+	 * @return false if processor stopped search
+	 */
+	public static boolean processDirectInheritors(@NotNull NapileClass napileClass, @NotNull GlobalSearchScope scope, @NotNull Processor<NapileSuperListOwner> processor)
+	{
+		final String name = napileClass.getName();
+		final FqName fqName = napileClass.getFqName();
+		if(name == null || fqName == null)
+			return true;
+
+		Collection<VirtualFile> files = FileBasedIndex.getInstance().getContainingFiles(NapileDirectInheritorsIndex.NAME, name, new NapileSourceFilterScope(scope));
+		if(files.isEmpty())
+			return true;
+
+		PsiManager psiManager = PsiManager.getInstance(napileClass.getProject());
+
+		for(VirtualFile virtualFile : files)
+		{
+			ProgressIndicatorProvider.checkCanceled();
+
+			PsiFile psiFile = psiManager.findFile(virtualFile);
+			if(!(psiFile instanceof NapileFile))
+				continue;
+
+			for(NapileSuperListOwner owner : PsiTreeUtil.findChildrenOfType(psiFile, NapileSuperListOwner.class))
+			{
+				if(owner != napileClass && isExtending(owner, (NapileFile) psiFile, napileClass, name, fqName) && !processor.process(owner))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return all direct and indirect inheritors of class
+	 */
+	@NotNull
+	public static List<NapileSuperListOwner> findAllInheritors(@NotNull NapileClass napileClass, @NotNull GlobalSearchScope scope)
+	{
+		List<NapileSuperListOwner> result = new ArrayList<NapileSuperListOwner>();
+		Set<NapileClass> visited = new HashSet<NapileClass>();
+		visited.add(napileClass);
+
+		LinkedList<NapileClass> queue = new LinkedList<NapileClass>();
+		queue.add(napileClass);
+		while(!queue.isEmpty())
+		{
+			for(NapileSuperListOwner inheritor : findDirectInheritors(queue.removeFirst(), scope))
+			{
+				if(inheritor instanceof NapileClass)
+				{
+					if(!visited.add((NapileClass) inheritor))
+						continue;
+
+					queue.add((NapileClass) inheritor);
+				}
+				result.add(inheritor);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return methods of inheritors, which are overrides method. Methods are matched by name, count of parameters and
+	 * short names of parameter types, types which are type parameters of method or its classes are matched with any type.
+	 * Result can contain overloads with same parameters in other type arguments, it is confirmed by {@link #isOverriding}
+	 */
+	@NotNull
+	public static List<NapileMethod> findOverridingMethods(@NotNull NapileMethod method, @NotNull Collection<NapileSuperListOwner> inheritors)
+	{
+		final String name = method.getName();
+		if(name == null)
+			return Collections.emptyList();
+
+		final NapileCallParameter[] parameters = method.getCallParameters();
+		final Set<String> typeParameterNames = collectTypeParameterNames(method);
+
+		List<NapileMethod> result = new ArrayList<NapileMethod>();
+		for(NapileSuperListOwner inheritor : inheritors)
+		{
+			if(!(inheritor instanceof NapileClassLike))
+				continue;
+
+			for(NapileDeclaration declaration : ((NapileClassLike) inheritor).getDeclarations())
+			{
+				if(!(declaration instanceof NapileMethod))
+					continue;
+
+				NapileMethod method2 = (NapileMethod) declaration;
+				if(name.equals(method2.getName()) && method2.hasModifier(NapileTokens.OVERRIDE_KEYWORD) && isSameParameters(parameters, method2.getCallParameters(), typeParameterNames))
+					result.add(method2);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Check by descriptors from last analyze of overriding method. If it is not analyzed yet - method is accepted
+	 */
+	public static boolean isOverriding(@NotNull NapileMethod overridingMethod, @NotNull NapileMethod method)
+	{
+		AnalyzeExhaust analyzeExhaust = ModuleAnalyzerUtil.lastAnalyze(overridingMethod.getContainingFile());
+		BindingTrace bindingTrace = analyzeExhaust.getBindingTrace();
+
+		DeclarationDescriptor descriptor = bindingTrace.get(BindingTraceKeys.DECLARATION_TO_DESCRIPTOR, overridingMethod);
+		if(!(descriptor instanceof CallableMemberDescriptor))
+			return true;
+
+		Set<CallableMemberDescriptor> visited = new HashSet<CallableMemberDescriptor>();
+		LinkedList<CallableMemberDescriptor> queue = new LinkedList<CallableMemberDescriptor>();
+		queue.add((CallableMemberDescriptor) descriptor);
+		while(!queue.isEmpty())
+		{
+			for(CallableMemberDescriptor overriddenDescriptor : queue.removeFirst().getOverriddenDescriptors())
+			{
+				if(!visited.add(overriddenDescriptor))
+					continue;
+
+				if(BindingTraceUtil.descriptorToDeclaration(bindingTrace, overriddenDescriptor) == method)
+					return true;
+
+				queue.add(overriddenDescriptor);
+			}
+		}
+		return false;
+	}
+
+	private static boolean isSameParameters(@NotNull NapileCallParameter[] parameters, @NotNull NapileCallParameter[] parameters2, @NotNull Set<String> typeParameterNames)
+	{
+		if(parameters.length != parameters2.length)
+			return false;
+
+		for(int i = 0; i < parameters.length; i++)
+		{
+			NapileTypeReference typeReference = getTypeReference(parameters[i]);
+			NapileTypeReference typeReference2 = getTypeReference(parameters2[i]);
+			if(typeReference == null || typeReference2 == null)
+			{
+				if(typeReference != typeReference2)
+					return false;
+				continue;
+			}
+
+			NapileTypeElement typeElement = typeReference.getTypeElement();
+			NapileTypeElement typeElement2 = typeReference2.getTypeElement();
+			if(typeElement instanceof NapileUserType && ((NapileUserType) typeElement).getQualifier() == null && typeParameterNames.contains(((NapileUserType) typeElement).getReferencedName()))
+				continue;
+
+			if(typeElement instanceof NapileUserType && typeElement2 instanceof NapileUserType)
+			{
+				// names can be qualified in one of methods
+				String referencedName = ((NapileUserType) typeElement).getReferencedName();
+				if(referencedName == null || !referencedName.equals(((NapileUserType) typeElement2).getReferencedName()))
+					return false;
+			}
+			else if(!StringUtil.replace(typeReference.getText(), " ", "").equals(StringUtil.replace(typeReference2.getText(), " ", "")))
+				return false;
+		}
+		return true;
+	}
+
+	@Nullable
+	private static NapileTypeReference getTypeReference(@NotNull NapileCallParameter parameter)
+	{
+		return parameter instanceof NapileCallParameterAsVariable ? ((NapileCallParameterAsVariable) parameter).getTypeReference() : null;
+	}
+
+	@NotNull
+	private static Set<String> collectTypeParameterNames(@NotNull NapileMethod method)
+	{
+		Set<String> names = new HashSet<String>();
+		NapileTypeParameterListOwner owner = method;
+		while(owner != null)
+		{
+			for(NapileTypeParameter typeParameter : owner.getTypeParameters())
+				names.add(typeParameter.getName());
+			owner = PsiTreeUtil.getParentOfType(owner, NapileTypeParameterListOwner.class);
+		}
+		return names;
+	}
+
+	private static boolean isExtending(@NotNull NapileSuperListOwner owner, @NotNull NapileFile file, @NotNull NapileClass napileClass, @NotNull String name, @NotNull FqName fqName)
+	{
+		for(NapileTypeReference typeReference : owner.getSuperTypes())
+		{
+			NapileTypeElement typeElement = typeReference.getTypeElement();
+			if(!(typeElement instanceof NapileUserType))
+				continue;
+
+			NapileUserType userType = (NapileUserType) typeElement;
+			if(!name.equals(userType.getReferencedName()))
+				continue;
+
+			NapileUserType qualifier = userType.getQualifier();
+			if(qualifier != null)
+			{
+				String qualifiedName = qualifier.getText() + "." + name;
+				if(fqName.getFqName().equals(qualifiedName))
+					return true;
+
+				// name of nested class relative to package of file
+				FqName packageFqName = file.getPackageFqName();
+				if(!packageFqName.isRoot() && fqName.getFqName().equals(packageFqName.getFqName() + "." + qualifiedName))
+					return true;
+			}
+			else if(isVisibleByShortName(owner, file, napileClass, fqName))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean isVisibleByShortName(@NotNull NapileSuperListOwner owner, @NotNull NapileFile file, @NotNull NapileClass napileClass, @NotNull FqName fqName)
+	{
+		// package of class, or outer class for nested class
+		FqName containerFqName = fqName.parent();
+
+		PsiFile classFile = napileClass.getContainingFile();
+		if(classFile instanceof NapileFile && containerFqName.equals(((NapileFile) classFile).getPackageFqName()))
+		{
+			if(containerFqName.equals(file.getPackageFqName()) || containerFqName.equals(NapileLangPackage.PACKAGE))
+				return true;
+		}
+		else
+		{
+			// nested class is visible by short name inside outer class
+			NapileClassLike outerClass = PsiTreeUtil.getParentOfType(napileClass, NapileClassLike.class);
+			if(outerClass != null && PsiTreeUtil.isAncestor(outerClass, owner, false))
+				return true;
+		}
+
+		for(NapileImportDirective importDirective : file.getImportDirectives())
+		{
+			NapileExpression importedReference = importDirective.getImportedReference();
+			if(importedReference == null)
+				continue;
+
+			String importedName = importedReference.getText();
+			if(importDirective.isAllUnder())
+			{
+				if(containerFqName.getFqName().equals(importedName))
+					return true;
+			}
+			else if(importDirective.getAliasName() == null && fqName.getFqName().equals(importedName))
+				return true;
+		}
+		return false;
+	}
+}
@@ -20,6 +20,7 @@ import org.napile.idea.plugin.codeInsight.toolWindow.codewindow.BytecodeToolwind
 import org.napile.idea.plugin.codeInsight.toolWindow.codewindow.TextBytecodeToolwindow;
 import org.napile.idea.plugin.codeInsight.toolWindow.codewindow.DocPreviewToolwindow;
 import org.napile.idea.plugin.codeInsight.toolWindow.resolvewindow.ResolveToolwindow;
+import org.napile.idea.plugin.codeInsight.toolWindow.statisticswindow.AnalyzeStatisticsToolwindow;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
@@ -41,5 +42,6 @@ public class NapileInternalToolWindowFactory implements ToolWindowFactory
 		contentManager.addContent(contentFactory.createContent(new BytecodeToolwindow(project), "Bytecode", false));
 		contentManager.addContent(contentFactory.createContent(new ResolveToolwindow(project), "Resolve", false));
 		contentManager.addContent(contentFactory.createContent(new DocPreviewToolwindow(project), "Doc preview", false));
+		contentManager.addContent(contentFactory.createContent(new AnalyzeStatisticsToolwindow(project), "Analyze statistics", false));
 	}
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.codeInsight.toolWindow.statisticswindow;
+
+import java.awt.BorderLayout;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JPanel;
+
+import org.jetbrains.annotations.Nullable;
+import org.napile.idea.plugin.module.statistics.AnalyzeRecord;
+import org.napile.idea.plugin.module.statistics.AnalyzeStatistics;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.Alarm;
+import com.intellij.util.ui.ColumnInfo;
+import com.intellij.util.ui.ListTableModel;
+
+/**
+ * Shows metrics of last module analyzes, newest first
+ *
+ * @author VISTALL
+ * @since 17:20/30.04.13
+ */
+public class AnalyzeStatisticsToolwindow extends JPanel implements Disposable
+{
+	private static final int UPDATE_DELAY = 1000;
+
+	private static abstract class RecordColumn extends ColumnInfo<AnalyzeRecord, String>
+	{
+		private RecordColumn(String name)
+		{
+			super(name);
+		}
+	}
+
+	private static final ColumnInfo[] COLUMNS = new ColumnInfo[]
+	{
+			new RecordColumn("Module")
+			{
+				@Nullable
+				@Override
+				public String valueOf(AnalyzeRecord record)
+				{
+					return record.getModuleName() + (record.isTest() ? " (test)" : "");
+				}
+			},
+			new RecordColumn("Kind")
+			{
+				@Nullable
+				@Override
+				public String valueOf(AnalyzeRecord record)
+				{
+					return record.isCanceled() ? "CANCELED" : record.getKind().name();
+				}
+			},
+			new RecordColumn("Files")
+			{
+				@Nullable
+				@Override
+				public String valueOf(AnalyzeRecord record)
+				{
+					return record.getResolvedFileCount() + "/" + record.getFileCount();
+				}
+			},
+			new RecordColumn("Wall ms")
+			{
+				@Nullable
+				@Override
+				public String valueOf(AnalyzeRecord record)
+				{
+					return String.valueOf(record.getWallNanos() / 1000000);
+				}
+			},
+			new RecordColumn("CPU ms")
+			{
+				@Nullable
+				@Override
+				public String valueOf(AnalyzeRecord record)
+				{
+					return String.valueOf(record.getCpuNanos() / 1000000);
+				}
+			},
+			new RecordColumn("Diagnostics")
+			{
+				@Nullable
+				@Override
+				public String valueOf(AnalyzeRecord record)
+				{
+					return String.valueOf(record.getDiagnosticCount());
+				}
+			},
+			new RecordColumn("Phases (wall/cpu ms)")
+			{
+				@Nullable
+				@Override
+				public String valueOf(AnalyzeRecord record)
+				{
+					StringBuilder builder = new StringBuilder();
+					for(Map.Entry<String, AnalyzeRecord.Phase> entry : record.getPhases().entrySet())
+					{
+						if(builder.length() > 0)
+							builder.append(", ");
+						builder.append(entry.getKey()).append(": ").append(entry.getValue().getWallNanos() / 1000000).append('/').append(entry.getValue().getCpuNanos() / 1000000);
+					}
+					return builder.toString();
+				}
+			},
+			new RecordColumn("Slices")
+			{
+				@Nullable
+				@Override
+				public String valueOf(AnalyzeRecord record)
+				{
+					StringBuilder builder = new StringBuilder();
+					for(Map.Entry<String, Integer> entry : record.getSliceSizes().entrySet())
+					{
+						if(builder.length() > 0)
+							builder.append(", ");
+						builder.append(entry.getKey()).append(": ").append(entry.getValue());
+					}
+					return builder.toString();
+				}
+			}
+	};
+
+	private final Project myProject;
+	private final ListTableModel<AnalyzeRecord> myModel;
+	private final Alarm myUpdateAlarm;
+	private long myModificationCount = -1;
+
+	public AnalyzeStatisticsToolwindow(Project project)
+	{
+		super(new BorderLayout());
+		myProject = project;
+
+		myModel = new ListTableModel<AnalyzeRecord>(COLUMNS);
+		add(ScrollPaneFactory.createScrollPane(new JBTable(myModel)));
+
+		Disposer.register(project, this);
+
+		myUpdateAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+		myUpdateAlarm.addRequest(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				myUpdateAlarm.addRequest(this, UPDATE_DELAY);
+				update();
+			}
+		}, UPDATE_DELAY);
+	}
+
+	private void update()
+	{
+		AnalyzeStatistics statistics = AnalyzeStatistics.getInstance(myProject);
+		if(statistics.getModificationCount() == myModificationCount)
+			return;
+
+		myModificationCount = statistics.getModificationCount();
+
+		List<AnalyzeRecord> records = statistics.getRecords();
+		Collections.reverse(records);
+		myModel.setItems(records);
+	}
+
+	@Override
+	public void dispose()
+	{
+	}
+}
@@ -36,6 +36,8 @@ public class NapileEditorOptions implements PersistentStateComponent<NapileEdito
 {
 	private boolean donTShowConversionDialog = false;
 	private boolean enableJavaToNapileConversion = true;
+	private int analyzeDelay = 300;
+	private boolean staleAnalyzeInDumbMode = true;
 
 	public boolean isDonTShowConversionDialog()
 	{
@@ -58,6 +60,32 @@ public class NapileEditorOptions implements PersistentStateComponent<NapileEdito
 		this.enableJavaToNapileConversion = enableJavaToNapileConversion;
 	}
 
+	/**
+	 * @return delay in ms after last change, before background module analyze is started
+	 */
+	public int getAnalyzeDelay()
+	{
+		return analyzeDelay;
+	}
+
+	public void setAnalyzeDelay(int analyzeDelay)
+	{
+		this.analyzeDelay = analyzeDelay;
+	}
+
+	/**
+	 * @return true if last analyze result is used while indexing, instead of empty result
+	 */
+	public boolean isStaleAnalyzeInDumbMode()
+	{
+		return staleAnalyzeInDumbMode;
+	}
+
+	public void setStaleAnalyzeInDumbMode(boolean staleAnalyzeInDumbMode)
+	{
+		this.staleAnalyzeInDumbMode = staleAnalyzeInDumbMode;
+	}
+
 	@Override
 	public NapileEditorOptions getState()
 	{
@@ -20,6 +20,7 @@ import static com.intellij.patterns.StandardPatterns.or;
 import static org.napile.idea.plugin.editor.completion.patterns.NapilePsiElementPattern.element;
 
 import org.jetbrains.annotations.NotNull;
+import org.napile.asm.resolve.name.FqName;
 import org.napile.compiler.analyzer.AnalyzeExhaust;
 import org.napile.compiler.lang.descriptors.CallableMemberDescriptor;
 import org.napile.compiler.lang.descriptors.ClassDescriptor;
@@ -32,17 +33,18 @@ import org.napile.compiler.lang.descriptors.VariableDescriptor;
 import org.napile.compiler.lang.lexer.NapileTokens;
 import org.napile.compiler.lang.psi.NapileBlockExpression;
 import org.napile.compiler.lang.psi.NapileCallParameterList;
+import org.napile.compiler.lang.psi.NapileClass;
 import org.napile.compiler.lang.psi.NapileClassBody;
 import org.napile.compiler.lang.psi.NapileDeclaration;
 import org.napile.compiler.lang.psi.NapileDotQualifiedExpressionImpl;
 import org.napile.compiler.lang.psi.NapileExpression;
 import org.napile.compiler.lang.psi.NapileFile;
 import org.napile.compiler.lang.resolve.BindingTraceKeys;
-import org.napile.compiler.lang.resolve.BindingTrace;
 import org.napile.compiler.lang.resolve.BodiesResolveContext;
 import org.napile.compiler.lang.resolve.scopes.NapileScope;
 import org.napile.compiler.lang.types.NapileType;
 import org.napile.compiler.lang.types.NamespaceType;
+import org.napile.idea.plugin.caches.NapileClassResolver;
 import org.napile.idea.plugin.editor.completion.lookup.DescriptionLookupBuilder;
 import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
 import com.intellij.codeInsight.completion.CompletionContributor;
@@ -50,9 +52,11 @@ import com.intellij.codeInsight.completion.CompletionParameters;
 import com.intellij.codeInsight.completion.CompletionProvider;
 import com.intellij.codeInsight.completion.CompletionResultSet;
 import com.intellij.codeInsight.completion.CompletionType;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.patterns.ElementPattern;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.ProcessingContext;
 
@@ -95,15 +99,11 @@ public class NapileCompletionContributor extends CompletionContributor
 				if(!(containingFile instanceof NapileFile))
 					return;
 
-				AnalyzeExhaust analyze = ModuleAnalyzerUtil.lastAnalyze((NapileFile) containingFile);
-
 				NapileDeclaration declaration = PsiTreeUtil.getParentOfType(position, NapileDeclaration.class);
 				if(declaration == null)
 					return;
 
-				BodiesResolveContext bodiesResolveContext = analyze.getBodiesResolveContext();
-
-				NapileScope scope = analyze.getBindingTrace().get(BindingTraceKeys.RESOLUTION_SCOPE, declaration);
+				NapileScope scope = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.RESOLUTION_SCOPE, declaration);
 				if(scope == null)
 				{
 					return;
@@ -133,19 +133,27 @@ public class NapileCompletionContributor extends CompletionContributor
 
 				NapileDotQualifiedExpressionImpl dotQualifiedExpression = (NapileDotQualifiedExpressionImpl) prevElement;
 
-				AnalyzeExhaust analyze = ModuleAnalyzerUtil.lastAnalyze((NapileFile) containingFile);
-
-				//BodiesResolveContext bodiesResolveContext = analyze.getBodiesResolveContext();
-
-				BindingTrace bindingTrace = analyze.getBindingTrace();
-
-				NapileType type = bindingTrace.get(BindingTraceKeys.EXPRESSION_TYPE, dotQualifiedExpression.getReceiverExpression());
+				NapileType type = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.EXPRESSION_TYPE, dotQualifiedExpression.getReceiverExpression());
 				if(type == null)
 					return;
 
 				if(type instanceof NamespaceType)
 				{
+					// receiver is package - sub packages and classes are taken from indexes
+					NapileExpression receiverExpression = dotQualifiedExpression.getReceiverExpression();
+					String packageName = StringUtil.replace(receiverExpression.getText(), " ", "");
+					if(!FqName.isValid(packageName))
+						return;
+
+					FqName packageFqName = new FqName(packageName);
+					NapileClassResolver classResolver = NapileClassResolver.getInstance(containingFile.getProject());
+					GlobalSearchScope scope = containingFile.getResolveScope();
 
+					for(String subPackageName : classResolver.getSubPackageNames(packageFqName, scope))
+						result.addElement(DescriptionLookupBuilder.buildPackageLookup(subPackageName));
+
+					for(NapileClass napileClass : classResolver.getClassesByPackage(packageFqName, scope))
+						result.addElement(DescriptionLookupBuilder.buildClassLookup(napileClass));
 				}
 				else
 				{
@@ -174,14 +182,12 @@ public class NapileCompletionContributor extends CompletionContributor
 
 				BodiesResolveContext bodiesResolveContext = analyze.getBodiesResolveContext();
 
-				BindingTrace bindingContext = analyze.getBindingTrace();
-
 				NapileExpression e = PsiTreeUtil.getParentOfType(position, NapileExpression.class);
 
 				if(e == null)
 					return;
 
-				NapileScope scope = bindingContext.get(BindingTraceKeys.RESOLUTION_SCOPE, e);
+				NapileScope scope = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.RESOLUTION_SCOPE, e);
 				if(scope == null)
 				{
 					NapileDeclaration declaration = PsiTreeUtil.getParentOfType(position, NapileDeclaration.class);
@@ -18,6 +18,7 @@ package org.napile.idea.plugin.editor.completion.lookup;
 
 import org.jetbrains.annotations.NotNull;
 import org.napile.asm.AsmConstants;
+import org.napile.asm.resolve.name.FqName;
 import org.napile.asm.resolve.name.FqNameUnsafe;
 import org.napile.asm.resolve.name.Name;
 import org.napile.compiler.lang.descriptors.ClassDescriptor;
@@ -25,11 +26,14 @@ import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
 import org.napile.compiler.lang.descriptors.MethodDescriptor;
 import org.napile.compiler.lang.descriptors.TypeParameterDescriptor;
 import org.napile.compiler.lang.descriptors.VariableDescriptor;
+import org.napile.compiler.lang.psi.NapileClass;
 import org.napile.compiler.lang.resolve.DescriptorUtils;
 import org.napile.compiler.lang.types.NapileType;
 import org.napile.idea.plugin.NapileIconProvider2;
 import com.intellij.codeInsight.completion.CompletionResultSet;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.icons.AllIcons;
+import com.intellij.ide.IconDescriptorUpdaters;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.Function;
 
@@ -67,6 +71,24 @@ public class DescriptionLookupBuilder
 		return b;
 	}
 
+	@NotNull
+	public static LookupElementBuilder buildPackageLookup(@NotNull String name)
+	{
+		return LookupElementBuilder.create(name).withIcon(AllIcons.Nodes.Package);
+	}
+
+	@NotNull
+	public static LookupElementBuilder buildClassLookup(@NotNull NapileClass napileClass)
+	{
+		LookupElementBuilder elementBuilder = LookupElementBuilder.create(napileClass);
+
+		elementBuilder = elementBuilder.withIcon(IconDescriptorUpdaters.getIcon(napileClass, 0));
+		FqName fqName = napileClass.getFqName();
+		if(fqName != null)
+			elementBuilder = elementBuilder.withTailText("(" + fqName.parent().getFqName() + ")", true);
+		return elementBuilder;
+	}
+
 	@NotNull
 	private static LookupElementBuilder buildMethodLookup(Name name, MethodDescriptor methodDescriptor)
 	{
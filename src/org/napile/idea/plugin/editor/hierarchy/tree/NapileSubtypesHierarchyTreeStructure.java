@@ -4,17 +4,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jetbrains.annotations.NotNull;
-import org.napile.compiler.analyzer.AnalyzeExhaust;
-import org.napile.compiler.lang.descriptors.ClassDescriptor;
 import org.napile.compiler.lang.psi.NapileClass;
-import org.napile.compiler.lang.resolve.BindingTraceKeys;
-import org.napile.compiler.lang.resolve.BindingTraceUtil;
-import org.napile.compiler.lang.resolve.DescriptorUtils;
-import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
+import org.napile.compiler.lang.psi.NapileSuperListOwner;
+import org.napile.idea.plugin.caches.NapileInheritorsSearch;
 import com.intellij.ide.hierarchy.HierarchyNodeDescriptor;
 import com.intellij.ide.hierarchy.HierarchyTreeStructure;
 import com.intellij.openapi.project.Project;
-import com.intellij.psi.PsiElement;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.ArrayUtil;
 
 /**
@@ -49,24 +45,12 @@ public class NapileSubtypesHierarchyTreeStructure extends HierarchyTreeStructure
 			return ArrayUtil.EMPTY_OBJECT_ARRAY;
 		}
 
-		final AnalyzeExhaust analyzeExhaust = ModuleAnalyzerUtil.lastAnalyze(napileClass.getContainingFile());
-
-		final ClassDescriptor classDescriptor = analyzeExhaust.getBindingTrace().get(BindingTraceKeys.CLASS, napileClass);
-		if(classDescriptor == null)
-		{
-			return ArrayUtil.EMPTY_OBJECT_ARRAY;
-		}
-
 		final List<NapileTypeHierarchyNodeDescriptor> nodes = new ArrayList<NapileTypeHierarchyNodeDescriptor>();
-		for(ClassDescriptor temp : analyzeExhaust.getBodiesResolveContext().getClasses().values())
+		for(NapileSuperListOwner inheritor : NapileInheritorsSearch.findDirectInheritors(napileClass, GlobalSearchScope.allScope(myProject)))
 		{
-			if(DescriptorUtils.isSubclass(temp, classDescriptor))
+			if(inheritor instanceof NapileClass)
 			{
-				final PsiElement element = BindingTraceUtil.descriptorToDeclaration(analyzeExhaust.getBindingTrace(), temp);
-				if(element != null && element != napileClass)
-				{
-					nodes.add(new NapileTypeHierarchyNodeDescriptor(myProject, descriptor, (NapileClass) element, false));
-				}
+				nodes.add(new NapileTypeHierarchyNodeDescriptor(myProject, descriptor, (NapileClass) inheritor, false));
 			}
 		}
 
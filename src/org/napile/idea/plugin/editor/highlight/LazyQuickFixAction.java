@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.editor.highlight;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.diagnostics.Diagnostic;
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.codeInsight.intention.HighPriorityAction;
+import com.intellij.codeInsight.intention.IntentionAction;
+import com.intellij.codeInspection.HintAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.IncorrectOperationException;
+
+/**
+ * Quick fix descriptor which is registered in {@link HighlightInfo} by highlight pass.
+ * Real fix is created by {@link NapileQuickFixProvider} only when it is requested by lightbulb or Alt+Enter - platform always
+ * checks {@link #isAvailable} before text of action is requested, so text is taken from created fix.
+ * Descriptor does not keep editor, because infos are shared by all editors of document.
+ * Hint fixes (like auto import popup) are created by {@link HintAction#showHint}, with editor of hint
+ *
+ * @author VISTALL
+ * @since 14:10/02.05.13
+ */
+class LazyQuickFixAction implements IntentionAction
+{
+	static class HighPriority extends LazyQuickFixAction implements HighPriorityAction
+	{
+		HighPriority(@NotNull NapileQuickFixProvider provider, @NotNull Diagnostic diagnostic, @NotNull HighlightInfo highlightInfo)
+		{
+			super(provider, diagnostic, highlightInfo);
+		}
+	}
+
+	static class Hint extends LazyQuickFixAction implements HintAction
+	{
+		Hint(@NotNull NapileQuickFixProvider provider, @NotNull Diagnostic diagnostic, @NotNull HighlightInfo highlightInfo)
+		{
+			super(provider, diagnostic, highlightInfo);
+		}
+
+		@Override
+		public boolean showHint(@NotNull Editor editor)
+		{
+			IntentionAction value = getAction(editor);
+			return value instanceof HintAction && ((HintAction) value).showHint(editor);
+		}
+	}
+
+	static class HighPriorityHint extends Hint implements HighPriorityAction
+	{
+		HighPriorityHint(@NotNull NapileQuickFixProvider provider, @NotNull Diagnostic diagnostic, @NotNull HighlightInfo highlightInfo)
+		{
+			super(provider, diagnostic, highlightInfo);
+		}
+	}
+
+	private final NapileQuickFixProvider provider;
+	private final Diagnostic diagnostic;
+	private final HighlightInfo highlightInfo;
+
+	private boolean materialized;
+	private IntentionAction action;
+
+	LazyQuickFixAction(@NotNull NapileQuickFixProvider provider, @NotNull Diagnostic diagnostic, @NotNull HighlightInfo highlightInfo)
+	{
+		this.provider = provider;
+		this.diagnostic = diagnostic;
+		this.highlightInfo = highlightInfo;
+	}
+
+	@Nullable
+	synchronized IntentionAction getAction(@Nullable Editor editor)
+	{
+		if(!materialized && editor != null)
+		{
+			materialized = true;
+			if(diagnostic.isValid())
+				action = provider.createQuickFix(diagnostic, editor, highlightInfo);
+		}
+		return action;
+	}
+
+	@Nullable
+	private synchronized IntentionAction getCreatedAction()
+	{
+		return action;
+	}
+
+	@NotNull
+	@Override
+	public String getText()
+	{
+		IntentionAction value = getCreatedAction();
+		return value == null ? "" : value.getText();
+	}
+
+	@NotNull
+	@Override
+	public String getFamilyName()
+	{
+		IntentionAction value = getCreatedAction();
+		return value == null ? "" : value.getFamilyName();
+	}
+
+	@Override
+	public boolean isAvailable(@NotNull Project project, Editor editor, PsiFile file)
+	{
+		IntentionAction value = getAction(editor);
+		return value != null && value.isAvailable(project, editor, file);
+	}
+
+	@Override
+	public void invoke(@NotNull Project project, Editor editor, PsiFile file) throws IncorrectOperationException
+	{
+		IntentionAction value = getAction(editor);
+		if(value != null)
+			value.invoke(project, editor, file);
+	}
+
+	@Override
+	public boolean startInWriteAction()
+	{
+		IntentionAction value = getCreatedAction();
+		return value != null && value.startInWriteAction();
+	}
+}
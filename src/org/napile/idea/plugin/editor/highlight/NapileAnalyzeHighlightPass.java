@@ -43,7 +43,8 @@ public class NapileAnalyzeHighlightPass extends TextEditorHighlightingPass
 	@Override
 	public void doCollectInformation(@NotNull ProgressIndicator progress)
 	{
-		ModuleAnalyzerUtil.analyze(file);
+		// analyze is running in background, highlighting will be restarted after it
+		ModuleAnalyzerUtil.scheduleAnalyze(file);
 	}
 
 	@Override
@@ -18,15 +18,25 @@ package org.napile.idea.plugin.editor.highlight;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.NapileFileType;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
 import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.idea.plugin.module.ModuleAnalyzerListener;
 import com.intellij.codeHighlighting.Pass;
 import com.intellij.codeHighlighting.TextEditorHighlightingPass;
 import com.intellij.codeHighlighting.TextEditorHighlightingPassFactory;
 import com.intellij.codeHighlighting.TextEditorHighlightingPassRegistrar;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.AbstractProjectComponent;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 
 /**
  * @author VISTALL
@@ -39,6 +49,40 @@ public class NapileAnalyzeHighlightPassFactory extends AbstractProjectComponent
 		super(project);
 
 		registrar.registerTextEditorHighlightingPass(this, new int[] {Pass.UPDATE_FOLDING}, null, false, -1);
+
+		project.getMessageBus().connect(project).subscribe(ModuleAnalyzerListener.TOPIC, new ModuleAnalyzerListener()
+		{
+			@Override
+			public void moduleAnalyzed(@NotNull final Module module, boolean test, @NotNull AnalyzeExhaust analyzeExhaust)
+			{
+				ApplicationManager.getApplication().invokeLater(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						restartHighlighting(module);
+					}
+				}, myProject.getDisposed());
+			}
+		});
+	}
+
+	private void restartHighlighting(@NotNull Module module)
+	{
+		if(module.isDisposed())
+			return;
+
+		PsiManager psiManager = PsiManager.getInstance(myProject);
+		DaemonCodeAnalyzer daemonCodeAnalyzer = DaemonCodeAnalyzer.getInstance(myProject);
+		for(VirtualFile virtualFile : FileEditorManager.getInstance(myProject).getOpenFiles())
+		{
+			if(virtualFile.getFileType() != NapileFileType.INSTANCE)
+				continue;
+
+			PsiFile psiFile = psiManager.findFile(virtualFile);
+			if(psiFile != null && ModuleUtilCore.findModuleForPsiElement(psiFile) == module)
+				daemonCodeAnalyzer.restart(psiFile);
+		}
 	}
 
 	@Nullable
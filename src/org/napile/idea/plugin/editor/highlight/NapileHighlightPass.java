@@ -16,6 +16,7 @@
 
 package org.napile.idea.plugin.editor.highlight;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -27,18 +28,17 @@ import org.napile.compiler.analyzer.AnalyzeExhaust;
 import org.napile.compiler.lang.diagnostics.AbstractDiagnosticFactory;
 import org.napile.compiler.lang.diagnostics.Diagnostic;
 import org.napile.compiler.lang.diagnostics.Errors;
+import org.napile.compiler.lang.psi.NapileClassLike;
+import org.napile.compiler.lang.psi.NapileDeclaration;
 import org.napile.compiler.lang.psi.NapileFile;
 import org.napile.compiler.lang.psi.NapileReferenceExpression;
 import org.napile.compiler.lang.resolve.BindingTrace;
-import org.napile.idea.plugin.editor.highlight.postHighlight.InjectionHighlightingVisitor;
-import org.napile.idea.plugin.editor.highlight.postHighlight.LabelsHighlightingVisitor;
-import org.napile.idea.plugin.editor.highlight.postHighlight.MethodsHighlightingVisitor;
-import org.napile.idea.plugin.editor.highlight.postHighlight.PostHighlightVisitor;
-import org.napile.idea.plugin.editor.highlight.postHighlight.SoftKeywordPostHighlightVisitor;
-import org.napile.idea.plugin.editor.highlight.postHighlight.TypeKindHighlightingVisitor;
-import org.napile.idea.plugin.editor.highlight.postHighlight.VariablesHighlightingVisitor;
+import org.napile.idea.plugin.editor.highlight.postHighlight.PostHighlightPipeline;
 import org.napile.idea.plugin.highlighter.NapilePsiChecker;
+import org.napile.idea.plugin.module.AnalyzeSnapshot;
+import org.napile.idea.plugin.module.DiagnosticIndex;
 import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
+import org.napile.idea.plugin.module.statistics.AnalyzeStatistics;
 import com.google.common.collect.ImmutableSet;
 import com.intellij.codeHighlighting.TextEditorHighlightingPass;
 import com.intellij.codeInsight.daemon.impl.HighlightInfo;
@@ -51,13 +51,16 @@ import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.colors.CodeInsightColors;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.problems.Problem;
 import com.intellij.problems.WolfTheProblemSolver;
 import com.intellij.psi.MultiRangeReference;
+import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiReference;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.containers.MultiMap;
 
 /**
@@ -70,50 +73,223 @@ public class NapileHighlightPass extends TextEditorHighlightingPass
 	public static final Set<? extends AbstractDiagnosticFactory> UNRESOLVED_REFERENCES = ImmutableSet.<AbstractDiagnosticFactory>builder().add(Errors.NAMED_PARAMETER_NOT_FOUND, Errors.UNRESOLVED_REFERENCE, Errors.EXPECTED_METHOD_NOT_FOUND).build();
 	public static final Set<? extends AbstractDiagnosticFactory> REDECLARATION = ImmutableSet.<AbstractDiagnosticFactory>builder().add(Errors.REDECLARATION, Errors.NAME_SHADOWING).build();
 
+	private static final Key<CachedHighlights> CACHED_HIGHLIGHTS = Key.create("napile-cached-highlights");
+
+	/**
+	 * Analyze result, which infos are applied to document. Highlighters outside dirty range are kept only for same result
+	 */
+	private static final Key<WeakReference<Object>> APPLIED_ANALYZE_STAMP = Key.create("napile-applied-analyze-stamp");
+
+	/**
+	 * Stamp of infos, which are built from stored snapshot. Snapshot is loaded once per session, so they depend only on document
+	 */
+	private static final Object SNAPSHOT_STAMP = new Object();
+
+	/**
+	 * Infos of document, which are shared by all editors of it (split editors). Quick fixes are already registered in infos,
+	 * they do not keep editor - it is taken from {@link IntentionAction#invoke}
+	 */
+	private static class CachedHighlights
+	{
+		private final long documentStamp;
+		private final WeakReference<Object> analyzeStamp;
+		private final TextRange range;
+		private final Collection<HighlightInfo> infos;
+
+		private CachedHighlights(long documentStamp, Object analyzeStamp, TextRange range, Collection<HighlightInfo> infos)
+		{
+			this.documentStamp = documentStamp;
+			this.analyzeStamp = new WeakReference<Object>(analyzeStamp);
+			this.range = range;
+			this.infos = infos;
+		}
+
+		private boolean isValidFor(long documentStamp, Object analyzeStamp, TextRange range)
+		{
+			return this.documentStamp == documentStamp && this.analyzeStamp.get() == analyzeStamp && this.range.contains(range);
+		}
+	}
+
 	private final NapileFile file;
-	private final Editor editor;
+	private final TextRange dirtyRange;
 
 	private MultiMap<PsiFile, HighlightInfo> infos;
 	private MultiMap<HighlightInfo, IntentionAction> quickFixes;
+	private Object analyzeStamp;
+	private DiagnosticIndex problemsIndex;
 
-	protected NapileHighlightPass(@NotNull NapileFile file, @NotNull Editor editor)
+	/**
+	 * Highlighters of file are replaced only inside this range, highlighters outside it are kept
+	 */
+	private TextRange highlightRange;
+
+	protected NapileHighlightPass(@NotNull NapileFile file, @NotNull Editor editor, @NotNull TextRange dirtyRange)
 	{
 		super(file.getProject(), editor.getDocument());
 
 		this.file = file;
-		this.editor = editor;
+		this.dirtyRange = dirtyRange;
 	}
 
 	@Override
 	public void doCollectInformation(@NotNull ProgressIndicator progress)
 	{
-		final AnalyzeExhaust analyze = ModuleAnalyzerUtil.lastAnalyze(file);
-		final BindingTrace bindingTrace = analyze.getBindingTrace();
-
 		quickFixes = new MultiMap<HighlightInfo, IntentionAction>();
 		infos = new MultiMap<PsiFile, HighlightInfo>();
 
-		convertDiagnostic(bindingTrace);
+		assert myDocument != null;
+		final long documentStamp = myDocument.getModificationStamp();
 
-		Collection<HighlightInfo> selfInfos = infos.getModifiable(file);
+		// module is not analyzed yet in this session - show diagnostics stored by previous session
+		final List<AnalyzeSnapshot.Entry> snapshotEntries = ModuleAnalyzerUtil.getSnapshotEntries(file);
+		final AnalyzeExhaust analyze = snapshotEntries.isEmpty() ? ModuleAnalyzerUtil.lastAnalyze(file) : null;
+		analyzeStamp = analyze == null ? SNAPSHOT_STAMP : analyze.getBindingTrace();
 
-		for(PostHighlightVisitor visitor : new PostHighlightVisitor[]
+		// analyze result is changed - diagnostics outside of dirty member are stale too
+		final WeakReference<Object> appliedStamp = myDocument.getUserData(APPLIED_ANALYZE_STAMP);
+		final PsiElement highlightRoot = appliedStamp != null && appliedStamp.get() == analyzeStamp ? findHighlightRoot() : file;
+		highlightRange = highlightRoot.getTextRange().union(dirtyRange).intersection(file.getTextRange());
+		if(highlightRange == null)
 		{
-				new LabelsHighlightingVisitor(bindingTrace, selfInfos),
-				new MethodsHighlightingVisitor(bindingTrace, selfInfos),
-				new VariablesHighlightingVisitor(bindingTrace, selfInfos),
-				new TypeKindHighlightingVisitor(bindingTrace, selfInfos),
-				new SoftKeywordPostHighlightVisitor(bindingTrace, selfInfos),
-				new InjectionHighlightingVisitor(bindingTrace, selfInfos)
-		})
+			highlightRange = file.getTextRange();
+		}
+
+		// entry for own file is always present - highlighters inside range must be replaced even if there are no new infos
+		final Collection<HighlightInfo> selfInfos = infos.getModifiable(file);
+
+		// other editor of this document already highlighted it for same analyze result
+		final CachedHighlights cachedHighlights = myDocument.getUserData(CACHED_HIGHLIGHTS);
+		if(cachedHighlights != null && cachedHighlights.isValidFor(documentStamp, analyzeStamp, highlightRange))
 		{
-			file.accept(visitor);
+			for(HighlightInfo highlightInfo : cachedHighlights.infos)
+			{
+				if(isInHighlightRange(file, highlightInfo))
+					selfInfos.add(highlightInfo);
+			}
 		}
+		else
+		{
+			if(analyze == null)
+			{
+				convertSnapshot(snapshotEntries);
+
+				// visitors, which do not need resolve data (labels, soft keywords, injections), highlight without analyze
+				runPostHighlightVisitors(BindingTrace.EMPTY, highlightRoot, selfInfos);
+			}
+			else
+			{
+				final BindingTrace bindingTrace = analyze.getBindingTrace();
+
+				convertDiagnostic(DiagnosticIndex.getInstance(bindingTrace).getDiagnostics(file, highlightRange));
+
+				runPostHighlightVisitors(bindingTrace, highlightRoot, selfInfos);
+			}
+
+			registerQuickFixes();
+
+			myDocument.putUserData(CACHED_HIGHLIGHTS, new CachedHighlights(documentStamp, analyzeStamp, highlightRange, new ArrayList<HighlightInfo>(selfInfos)));
+		}
+
+		if(analyze != null)
+			collectProblemsOfOtherFiles(analyze.getBindingTrace());
+	}
+
+	private void runPostHighlightVisitors(@NotNull BindingTrace bindingTrace, @NotNull PsiElement highlightRoot, @NotNull Collection<HighlightInfo> selfInfos)
+	{
+		AnalyzeStatistics statistics = AnalyzeStatistics.getInstance(myProject);
+
+		PostHighlightPipeline pipeline = new PostHighlightPipeline(bindingTrace, selfInfos, statistics.isDetailed());
+		pipeline.run(highlightRoot);
+
+		statistics.addPostHighlightTime(PostHighlightPipeline.ALL_VISITORS, pipeline.getTotalTime());
+		for(int i = 0; i < pipeline.getVisitorsCount(); i++)
+			statistics.addPostHighlightTime(pipeline.getVisitorName(i), pipeline.getVisitorTime(i));
 	}
 
-	private void convertDiagnostic(BindingTrace bindingContext)
+	/**
+	 * @return outermost member declaration, which contains dirty range, or file if changes are not inside one member
+	 */
+	@NotNull
+	private PsiElement findHighlightRoot()
 	{
-		for(Diagnostic diagnostic : bindingContext.getDiagnostics())
+		if(dirtyRange.getStartOffset() <= 0 && dirtyRange.getEndOffset() >= file.getTextLength())
+			return file;
+
+		PsiElement start = file.findElementAt(dirtyRange.getStartOffset());
+		PsiElement end = file.findElementAt(Math.max(dirtyRange.getStartOffset(), dirtyRange.getEndOffset() - 1));
+		if(start == null || end == null)
+			return file;
+
+		PsiElement commonParent = PsiTreeUtil.findCommonParent(start, end);
+
+		PsiElement root = file;
+		for(PsiElement element = commonParent; element != null && !(element instanceof PsiFile); element = element.getParent())
+		{
+			if(element instanceof NapileDeclaration && !(element instanceof NapileClassLike))
+				root = element;
+		}
+		return root;
+	}
+
+	private boolean isInHighlightRange(@NotNull PsiFile psiFile, @NotNull HighlightInfo highlightInfo)
+	{
+		return psiFile != file || highlightRange.containsRange(highlightInfo.getStartOffset(), highlightInfo.getEndOffset());
+	}
+
+	private void convertSnapshot(List<AnalyzeSnapshot.Entry> entries)
+	{
+		for(AnalyzeSnapshot.Entry entry : entries)
+		{
+			if(entry.getRange().getEndOffset() > file.getTextLength())
+				continue;
+
+			HighlightInfoType type;
+			switch(entry.getSeverity())
+			{
+				case ERROR:
+					type = HighlightInfoType.ERROR;
+					break;
+				case WARNING:
+					type = HighlightInfoType.WARNING;
+					break;
+				default:
+					type = HighlightInfoType.INFORMATION;
+					break;
+			}
+
+			final HighlightInfo.Builder builder = HighlightInfo.newHighlightInfo(type);
+			builder.range(entry.getRange());
+			builder.description(entry.getMessage());
+			builder.escapedToolTip(entry.getTooltip());
+
+			final HighlightInfo info = builder.create();
+			if(info != null && isInHighlightRange(file, info))
+			{
+				infos.putValue(file, info);
+			}
+		}
+	}
+
+	private void collectProblemsOfOtherFiles(BindingTrace bindingContext)
+	{
+		DiagnosticIndex diagnosticIndex = DiagnosticIndex.getInstance(bindingContext);
+
+		// errors of other files are reported to problem solver once for each analyze result, not by each pass
+		if(!diagnosticIndex.isProblemsReported())
+		{
+			problemsIndex = diagnosticIndex;
+
+			for(PsiFile psiFile : diagnosticIndex.getFiles())
+			{
+				if(psiFile != file)
+					convertDiagnostic(diagnosticIndex.getDiagnostics(psiFile));
+			}
+		}
+	}
+
+	private void convertDiagnostic(Collection<Diagnostic> diagnostics)
+	{
+		for(Diagnostic diagnostic : diagnostics)
 		{
 			if(!diagnostic.isValid())
 				continue;
@@ -213,11 +389,24 @@ public class NapileHighlightPass extends TextEditorHighlightingPass
 	private void putHighlightAndActions(HighlightInfo.Builder builder, Diagnostic diagnostic)
 	{
 		final HighlightInfo e = builder.create();
-		if(e != null)
+		if(e != null && isInHighlightRange(diagnostic.getPsiFile(), e))
 		{
 			infos.putValue(diagnostic.getPsiFile(), e);
 
-			NapileQuickFixProviderEP.collectionQuickActions(editor, diagnostic, e, quickFixes);
+			// infos of other files are only reported to problem solver
+			if(diagnostic.getPsiFile() == file)
+				NapileQuickFixProviderEP.collectionQuickActions(diagnostic, e, quickFixes);
+		}
+	}
+
+	private void registerQuickFixes()
+	{
+		for(Map.Entry<HighlightInfo, Collection<IntentionAction>> entry : quickFixes.entrySet())
+		{
+			for(IntentionAction intentionAction : entry.getValue())
+			{
+				QuickFixAction.registerQuickFixAction(entry.getKey(), intentionAction);
+			}
 		}
 	}
 
@@ -235,7 +424,9 @@ public class NapileHighlightPass extends TextEditorHighlightingPass
 				{
 					assert myDocument != null;
 
-					UpdateHighlightersUtil.setHighlightersToEditor(myProject, myDocument, 0, file.getTextLength(), value, getColorsScheme(), getId());
+					UpdateHighlightersUtil.setHighlightersToEditor(myProject, myDocument, highlightRange.getStartOffset(), highlightRange.getEndOffset(), value, getColorsScheme(), getId());
+
+					myDocument.putUserData(APPLIED_ANALYZE_STAMP, new WeakReference<Object>(analyzeStamp));
 				}
 				else
 				{
@@ -254,18 +445,9 @@ public class NapileHighlightPass extends TextEditorHighlightingPass
 					WolfTheProblemSolver.getInstance(myProject).weHaveGotProblems(virtualFile, problems);
 				}
 			}
-		}
 
-		if(quickFixes != null)
-		{
-
-			for(Map.Entry<HighlightInfo, Collection<IntentionAction>> entry : quickFixes.entrySet())
-			{
-				for(IntentionAction intentionAction : entry.getValue())
-				{
-					QuickFixAction.registerQuickFixAction(entry.getKey(), intentionAction);
-				}
-			}
+			if(problemsIndex != null)
+				problemsIndex.markProblemsReported();
 		}
 	}
 }
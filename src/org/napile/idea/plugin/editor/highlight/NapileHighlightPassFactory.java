@@ -19,26 +19,38 @@ package org.napile.idea.plugin.editor.highlight;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.napile.compiler.lang.psi.NapileFile;
+import com.intellij.codeHighlighting.DirtyScopeTrackingHighlightingPassFactory;
 import com.intellij.codeHighlighting.Pass;
 import com.intellij.codeHighlighting.TextEditorHighlightingPass;
-import com.intellij.codeHighlighting.TextEditorHighlightingPassFactory;
 import com.intellij.codeHighlighting.TextEditorHighlightingPassRegistrar;
+import com.intellij.codeInsight.daemon.impl.FileStatusMap;
 import com.intellij.openapi.components.AbstractProjectComponent;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiFile;
 
 /**
+ * Pass tracks own dirty scope in {@link FileStatusMap}, so its dirty range is not affected by other passes
+ *
  * @author VISTALL
  * @since 19:22/26.02.13
  */
-public class NapileHighlightPassFactory extends AbstractProjectComponent implements TextEditorHighlightingPassFactory
+public class NapileHighlightPassFactory extends AbstractProjectComponent implements DirtyScopeTrackingHighlightingPassFactory
 {
+	private final int passId;
+
 	public NapileHighlightPassFactory(Project project, TextEditorHighlightingPassRegistrar registrar)
 	{
 		super(project);
 
-		registrar.registerTextEditorHighlightingPass(this, new int[] {Pass.UPDATE_ALL}, null, false, -1);
+		passId = registrar.registerTextEditorHighlightingPass(this, new int[] {Pass.UPDATE_ALL}, null, false, -1);
+	}
+
+	@Override
+	public int getPassId()
+	{
+		return passId;
 	}
 
 	@Nullable
@@ -48,6 +60,11 @@ public class NapileHighlightPassFactory extends AbstractProjectComponent impleme
 		if(!(file instanceof NapileFile))
 			return null;
 
-		return new NapileHighlightPass((NapileFile) file, editor);
+		// nothing is changed after last pass - highlighters in editor are up to date
+		TextRange dirtyRange = FileStatusMap.getDirtyTextRange(editor, passId);
+		if(dirtyRange == null)
+			return null;
+
+		return new NapileHighlightPass((NapileFile) file, editor, dirtyRange);
 	}
 }
@@ -24,6 +24,8 @@ import com.intellij.codeInsight.intention.IntentionAction;
 import com.intellij.openapi.editor.Editor;
 
 /**
+ * Created fix must not keep editor - highlight infos with fixes are shared by all editors of document
+ *
  * @author VISTALL
  * @since 22:29/26.02.13
  */
@@ -16,12 +16,20 @@
 
 package org.napile.idea.plugin.editor.highlight;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.napile.compiler.lang.diagnostics.AbstractDiagnosticFactory;
 import org.napile.compiler.lang.diagnostics.Diagnostic;
+import org.napile.compiler.lang.diagnostics.Errors;
 import com.intellij.codeInsight.daemon.impl.HighlightInfo;
 import com.intellij.codeInsight.intention.IntentionAction;
-import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.extensions.AbstractExtensionPointBean;
 import com.intellij.openapi.extensions.ExtensionPointName;
 import com.intellij.util.containers.MultiMap;
 import com.intellij.util.xmlb.annotations.Attribute;
@@ -30,64 +38,122 @@ import com.intellij.util.xmlb.annotations.Attribute;
  * @author VISTALL
  * @since 22:31/26.02.13
  */
-public class NapileQuickFixProviderEP
+public class NapileQuickFixProviderEP extends AbstractExtensionPointBean
 {
+	private static final Logger LOGGER = Logger.getInstance(NapileQuickFixProviderEP.class);
+
 	public static final ExtensionPointName<NapileQuickFixProviderEP> EP_NAME = ExtensionPointName.create("org.napile.idea.lang.quickFix");
 
+	/**
+	 * Name of field in {@link Errors}
+	 */
 	@Attribute("diagnosticName")
 	public String diagnosticName;
 
 	@Attribute("implementationClass")
 	public String implementationClass;
 
-	private static MultiMap<String, NapileQuickFixProvider> QUICK_FIX_PROVIDER_CACHE;
+	/**
+	 * Fix is shown at top of intention list
+	 */
+	@Attribute("highPriority")
+	public boolean highPriority;
 
-	public NapileQuickFixProvider createInstance()
+	/**
+	 * Provider creates {@link com.intellij.codeInspection.HintAction} (like auto import popup). Registered descriptor is hint action too,
+	 * fix is created when hint is requested
+	 */
+	@Attribute("hint")
+	public boolean hint;
+
+	/**
+	 * Immutable registry of providers, keyed by diagnostic factory instance. Class initialization publishes it to all threads
+	 */
+	private static class Registry
 	{
+		private static final Map<AbstractDiagnosticFactory, List<NapileQuickFixProviderEP>> PROVIDERS = createRegistry();
+	}
+
+	private volatile NapileQuickFixProvider instance;
 
+	public NapileQuickFixProvider createInstance()
+	{
 		try
 		{
-			final Class<?> aClass = Class.forName(implementationClass);
-			return (NapileQuickFixProvider) aClass.newInstance();
+			// class is loaded by class loader of plugin, which registers provider
+			return instantiate(implementationClass, ApplicationManager.getApplication().getPicoContainer());
 		}
-		catch(Exception e)
+		catch(ClassNotFoundException e)
 		{
 			throw new RuntimeException(e);
 		}
 	}
 
-	public static void collectionQuickActions(Editor editor,Diagnostic diagnostic, HighlightInfo highlightInfo, MultiMap<HighlightInfo, IntentionAction> map)
+	public NapileQuickFixProvider getInstance()
 	{
-		if(QUICK_FIX_PROVIDER_CACHE == null)
+		NapileQuickFixProvider value = instance;
+		if(value == null)
 		{
-			QUICK_FIX_PROVIDER_CACHE = initCache();
+			synchronized(this)
+			{
+				value = instance;
+				if(value == null)
+					instance = value = createInstance();
+			}
 		}
+		return value;
+	}
 
-		final Collection<NapileQuickFixProvider> providers = QUICK_FIX_PROVIDER_CACHE.get(diagnostic.getFactory().getName());
-		if(providers.isEmpty())
+	/**
+	 * Registers fixes for highlight info. Fixes are lazy and created only when they are requested
+	 */
+	public static void collectionQuickActions(Diagnostic diagnostic, HighlightInfo highlightInfo, MultiMap<HighlightInfo, IntentionAction> map)
+	{
+		final List<NapileQuickFixProviderEP> providers = Registry.PROVIDERS.get(diagnostic.getFactory());
+		if(providers == null)
 		{
 			return;
 		}
 
-		for(NapileQuickFixProvider ep : providers)
+		for(NapileQuickFixProviderEP ep : providers)
 		{
-			final IntentionAction quickFix = ep.createQuickFix(diagnostic, editor, highlightInfo);
-			if(quickFix != null)
-			{
-				map.putValue(highlightInfo, quickFix);
-			}
+			final NapileQuickFixProvider provider = ep.getInstance();
+
+			final LazyQuickFixAction action;
+			if(ep.hint)
+				action = ep.highPriority ? new LazyQuickFixAction.HighPriorityHint(provider, diagnostic, highlightInfo) : new LazyQuickFixAction.Hint(provider, diagnostic, highlightInfo);
+			else
+				action = ep.highPriority ? new LazyQuickFixAction.HighPriority(provider, diagnostic, highlightInfo) : new LazyQuickFixAction(provider, diagnostic, highlightInfo);
+			map.putValue(highlightInfo, action);
 		}
 	}
 
-	private static MultiMap<String, NapileQuickFixProvider> initCache()
+	private static Map<AbstractDiagnosticFactory, List<NapileQuickFixProviderEP>> createRegistry()
 	{
-		MultiMap<String, NapileQuickFixProvider> map = new MultiMap<String, NapileQuickFixProvider>();
+		Map<AbstractDiagnosticFactory, List<NapileQuickFixProviderEP>> map = new IdentityHashMap<AbstractDiagnosticFactory, List<NapileQuickFixProviderEP>>();
 
 		for(NapileQuickFixProviderEP ep : EP_NAME.getExtensions())
 		{
-			map.putValue(ep.diagnosticName, ep.createInstance());
+			final AbstractDiagnosticFactory factory;
+			try
+			{
+				factory = (AbstractDiagnosticFactory) Errors.class.getField(ep.diagnosticName).get(null);
+			}
+			catch(Exception e)
+			{
+				LOGGER.error("Unknown diagnostic " + ep.diagnosticName + " for quick fix " + ep.implementationClass, e);
+				continue;
+			}
+
+			List<NapileQuickFixProviderEP> list = map.get(factory);
+			if(list == null)
+				map.put(factory, list = new ArrayList<NapileQuickFixProviderEP>(1));
+			list.add(ep);
 		}
 
-		return map;
+		for(Map.Entry<AbstractDiagnosticFactory, List<NapileQuickFixProviderEP>> entry : map.entrySet())
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+
+		return Collections.unmodifiableMap(map);
 	}
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.editor.highlight.postHighlight;
+
+import java.util.Collection;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.openapi.progress.ProgressIndicatorProvider;
+import com.intellij.psi.PsiElement;
+
+/**
+ * Walks tree once and dispatches each element to all registered {@link PostHighlightVisitor}s.
+ * Visitors are not walking tree itself - {@link PostHighlightVisitor#visitElement(PsiElement)} is not visit children.
+ * If time of each visitor is measured, tree is walked by each visitor separately - time is taken once per visitor, not per element
+ *
+ * @author VISTALL
+ * @since 11:45/02.05.13
+ */
+public class PostHighlightPipeline
+{
+	public static final String ALL_VISITORS = "<all visitors>";
+
+	private final PostHighlightVisitor[] visitors;
+	private final boolean measureVisitors;
+	private final long[] times;
+	private long totalTime;
+
+	public PostHighlightPipeline(@NotNull BindingTrace bindingTrace, @NotNull Collection<HighlightInfo> holder, boolean measureVisitors)
+	{
+		PostHighlightVisitorEP[] extensions = PostHighlightVisitorEP.EP_NAME.getExtensions();
+
+		this.measureVisitors = measureVisitors;
+		visitors = new PostHighlightVisitor[extensions.length];
+		times = new long[extensions.length];
+		for(int i = 0; i < extensions.length; i++)
+			visitors[i] = extensions[i].createVisitor(bindingTrace, holder);
+	}
+
+	public void run(@NotNull PsiElement root)
+	{
+		if(visitors.length == 0)
+			return;
+
+		final long start = System.nanoTime();
+		if(measureVisitors)
+		{
+			for(int i = 0; i < visitors.length; i++)
+			{
+				final long visitorStart = System.nanoTime();
+
+				walk(root, new PostHighlightVisitor[] {visitors[i]});
+
+				times[i] += System.nanoTime() - visitorStart;
+			}
+		}
+		else
+			walk(root, visitors);
+		totalTime += System.nanoTime() - start;
+	}
+
+	private static void walk(@NotNull PsiElement element, @NotNull PostHighlightVisitor[] visitors)
+	{
+		ProgressIndicatorProvider.checkCanceled();
+
+		for(PostHighlightVisitor visitor : visitors)
+			element.accept(visitor);
+
+		for(PsiElement child = element.getFirstChild(); child != null; child = child.getNextSibling())
+			walk(child, visitors);
+	}
+
+	/**
+	 * @return count of visitors with measured time, zero if time of visitors is not measured
+	 */
+	public int getVisitorsCount()
+	{
+		return measureVisitors ? visitors.length : 0;
+	}
+
+	@NotNull
+	public String getVisitorName(int index)
+	{
+		return visitors[index].getClass().getSimpleName();
+	}
+
+	/**
+	 * @return time in nanoseconds which visitor spent in this pipeline
+	 */
+	public long getVisitorTime(int index)
+	{
+		return times[index];
+	}
+
+	/**
+	 * @return time in nanoseconds which all visitors spent in this pipeline
+	 */
+	public long getTotalTime()
+	{
+		return totalTime;
+	}
+}
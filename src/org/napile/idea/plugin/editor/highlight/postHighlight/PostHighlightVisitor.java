@@ -107,9 +107,11 @@ public class PostHighlightVisitor extends NapileVisitorVoid
 			highlight(HighlightInfoType.DEPRECATED, element, null, null);
 	}
 
+	/**
+	 * Children are not visited - tree is walked by {@link PostHighlightPipeline}
+	 */
 	@Override
 	public void visitElement(PsiElement element)
 	{
-		element.acceptChildren(this);
 	}
 }
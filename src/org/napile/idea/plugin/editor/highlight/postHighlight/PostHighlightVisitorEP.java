@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.editor.highlight.postHighlight;
+
+import java.lang.reflect.Constructor;
+import java.util.Collection;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.openapi.extensions.AbstractExtensionPointBean;
+import com.intellij.openapi.extensions.ExtensionPointName;
+import com.intellij.util.xmlb.annotations.Attribute;
+
+/**
+ * Registers {@link PostHighlightVisitor}, implementation must have constructor with ({@link BindingTrace}, {@link Collection}) parameters.
+ * All registered visitors are called by {@link PostHighlightPipeline} in one walk of tree
+ *
+ * @author VISTALL
+ * @since 11:20/02.05.13
+ */
+public class PostHighlightVisitorEP extends AbstractExtensionPointBean
+{
+	public static final ExtensionPointName<PostHighlightVisitorEP> EP_NAME = ExtensionPointName.create("org.napile.idea.lang.postHighlightVisitor");
+
+	@Attribute("implementationClass")
+	public String implementationClass;
+
+	private volatile Constructor<? extends PostHighlightVisitor> constructor;
+
+	@NotNull
+	public PostHighlightVisitor createVisitor(@NotNull BindingTrace bindingTrace, @NotNull Collection<HighlightInfo> holder)
+	{
+		try
+		{
+			return getConstructor().newInstance(bindingTrace, holder);
+		}
+		catch(Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	@NotNull
+	private Constructor<? extends PostHighlightVisitor> getConstructor() throws Exception
+	{
+		Constructor<? extends PostHighlightVisitor> value = constructor;
+		if(value == null)
+		{
+			// class is loaded by class loader of plugin, which registers visitor
+			final Class<? extends PostHighlightVisitor> aClass = findClass(implementationClass).asSubclass(PostHighlightVisitor.class);
+			constructor = value = aClass.getConstructor(BindingTrace.class, Collection.class);
+		}
+		return value;
+	}
+}
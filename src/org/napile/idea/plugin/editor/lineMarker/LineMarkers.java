@@ -21,7 +21,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import javax.swing.Icon;
 
@@ -30,21 +29,16 @@ import org.jetbrains.annotations.Nullable;
 import org.napile.compiler.analyzer.AnalyzeExhaust;
 import org.napile.compiler.lang.descriptors.CallParameterDescriptor;
 import org.napile.compiler.lang.descriptors.CallableDescriptor;
-import org.napile.compiler.lang.descriptors.ClassDescriptor;
 import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
-import org.napile.compiler.lang.descriptors.MethodDescriptor;
-import org.napile.compiler.lang.descriptors.MutableClassDescriptor;
-import org.napile.compiler.lang.psi.NapileAnonymClass;
 import org.napile.compiler.lang.psi.NapileClass;
 import org.napile.compiler.lang.psi.NapileDeclaration;
 import org.napile.compiler.lang.psi.NapileElement;
 import org.napile.compiler.lang.psi.NapileMethod;
+import org.napile.compiler.lang.psi.NapileSuperListOwner;
 import org.napile.compiler.lang.psi.util.NapileNameComparator;
 import org.napile.compiler.lang.resolve.BindingTraceKeys;
 import org.napile.compiler.lang.resolve.BindingTraceUtil;
-import org.napile.compiler.lang.resolve.BindingTrace;
-import org.napile.compiler.lang.resolve.BodiesResolveContext;
-import org.napile.compiler.lang.resolve.DescriptorUtils;
+import org.napile.idea.plugin.caches.NapileInheritorsSearch;
 import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
 import com.intellij.codeHighlighting.Pass;
 import com.intellij.codeInsight.daemon.GutterIconNavigationHandler;
@@ -55,6 +49,7 @@ import com.intellij.ide.util.DefaultPsiElementCellRenderer;
 import com.intellij.openapi.editor.markup.GutterIconRenderer;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiNameIdentifierOwner;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.Function;
 
 /**
@@ -112,41 +107,25 @@ public enum LineMarkers
 						return;
 
 					NapileClass napileClass = (NapileClass) element;
-					AnalyzeExhaust analyzeExhaust = ModuleAnalyzerUtil.lastAnalyze(napileClass.getContainingFile());
-
-					BodiesResolveContext context = analyzeExhaust.getBodiesResolveContext();
-
-					ClassDescriptor descriptor = analyzeExhaust.getBindingTrace().get(BindingTraceKeys.CLASS, napileClass);
-					if(descriptor == null)
-						return;
 
+					List<NapileSuperListOwner> inheritors = null;
 					for(NapileDeclaration declaration : napileClass.getDeclarations())
 					{
 						if(declaration instanceof NapileMethod)
 						{
-							MethodDescriptor methodDescriptor = analyzeExhaust.getBindingTrace().get(BindingTraceKeys.METHOD, declaration);
-							if(methodDescriptor == null)
-								continue;
-
-							final List<NapileElement> elements = new ArrayList<NapileElement>();
-							for(Map.Entry<NapileClass, MutableClassDescriptor> entry : context.getClasses().entrySet())
+							// inheritors are searched only for classes with methods, and only once for all methods
+							if(inheritors == null)
 							{
-								NapileClass class2 = entry.getKey();
-								MutableClassDescriptor descriptor2 = entry.getValue();
-								if(DescriptorUtils.isSubclass(descriptor2, descriptor))
-								{
-									for(NapileDeclaration declaration2 : class2.getDeclarations())
-									{
-										if(declaration2 instanceof NapileMethod)
-										{
-											MethodDescriptor methodDescriptor2 = analyzeExhaust.getBindingTrace().get(BindingTraceKeys.METHOD, declaration2);
-											if(methodDescriptor2 != null && methodDescriptor2.getOverriddenDescriptors().contains(methodDescriptor))
-												elements.add(declaration2);
-										}
-									}
-								}
+								GlobalSearchScope scope = GlobalSearchScope.allScope(napileClass.getProject());
+								if(!NapileInheritorsSearch.hasDirectInheritors(napileClass, scope))
+									return;
+
+								inheritors = NapileInheritorsSearch.findAllInheritors(napileClass, scope);
 							}
 
+							final NapileMethod method = (NapileMethod) declaration;
+							final List<NapileMethod> elements = NapileInheritorsSearch.findOverridingMethods(method, inheritors);
+
 							PsiElement name = ((PsiNameIdentifierOwner)declaration).getNameIdentifier();
 							if(name == null)
 								continue;
@@ -165,7 +144,15 @@ public enum LineMarkers
 								@Override
 								public void navigate(MouseEvent e, PsiElement elt)
 								{
-									PsiElementListNavigator.openTargets(e, elements.toArray(new NapileElement[elements.size()]), getTitle(), getTitle(), new DefaultPsiElementCellRenderer());
+									// candidates found by psi are confirmed by descriptors only on navigation
+									List<NapileMethod> targets = new ArrayList<NapileMethod>(elements.size());
+									for(NapileMethod overridingMethod : elements)
+									{
+										if(overridingMethod.isValid() && NapileInheritorsSearch.isOverriding(overridingMethod, method))
+											targets.add(overridingMethod);
+									}
+
+									PsiElementListNavigator.openTargets(e, targets.toArray(new NapileMethod[targets.size()]), getTitle(), getTitle(), new DefaultPsiElementCellRenderer());
 								}
 							}, GutterIconRenderer.Alignment.LEFT
 							));
@@ -196,6 +183,17 @@ public enum LineMarkers
 			},
 	CLASS_OVERRIDEN
 			{
+				@Nullable
+				@Override
+				protected LineMarkerInfo getLineMarkers(@NotNull PsiElement element)
+				{
+					// only first direct inheritor is searched for marker, all inheritors are collected by navigation
+					if(!(element instanceof NapileClass) || !NapileInheritorsSearch.hasDirectInheritors((NapileClass) element, GlobalSearchScope.allScope(element.getProject())))
+						return null;
+
+					return createLineMarker((NapileClass) element);
+				}
+
 				@NotNull
 				@Override
 				public Icon getIcon()
@@ -218,33 +216,8 @@ public enum LineMarkers
 						return Collections.emptyList();
 
 					final NapileClass napileClass = (NapileClass) element;
-					AnalyzeExhaust analyzeExhaust = ModuleAnalyzerUtil.lastAnalyze(napileClass.getContainingFile());
-
-					BindingTrace bindingContext = analyzeExhaust.getBindingTrace();
-					ClassDescriptor classDeclaration = (ClassDescriptor) bindingContext.get(BindingTraceKeys.DECLARATION_TO_DESCRIPTOR, element);
-					if(classDeclaration == null)
-						return Collections.emptyList();
-					List<NapileElement> result = new ArrayList<NapileElement>();
-
-					for(Map.Entry<NapileClass, MutableClassDescriptor> entry : analyzeExhaust.getBodiesResolveContext().getClasses().entrySet())
-					{
-						if(entry.getValue() == classDeclaration)
-							continue;
-
-						if(DescriptorUtils.isSubclass(entry.getValue(), classDeclaration))
-							result.add(entry.getKey());
-					}
 
-					for(Map.Entry<NapileAnonymClass, MutableClassDescriptor> entry : analyzeExhaust.getBodiesResolveContext().getAnonymous().entrySet())
-					{
-						if(entry.getValue() == classDeclaration)
-							continue;
-
-						if(DescriptorUtils.isSubclass(entry.getValue(), classDeclaration))
-							result.add(entry.getKey());
-					}
-
-					return result;
+					return new ArrayList<NapileElement>(NapileInheritorsSearch.findAllInheritors(napileClass, GlobalSearchScope.allScope(napileClass.getProject())));
 				}
 			};
 
@@ -268,33 +241,40 @@ public enum LineMarkers
 			List<NapileElement> result = getTargets(element);
 
 			if(!result.isEmpty())
-			{
-				PsiElement name = ((PsiNameIdentifierOwner)element).getNameIdentifier();
-				if(name == null)
-					return null;
+				return createLineMarker((PsiNameIdentifierOwner) element);
+		}
+		return null;
+	}
 
-				return new LineMarkerInfo<PsiElement>(name, name.getTextRange(), getIcon(), Pass.UPDATE_OVERRIDEN_MARKERS, new Function<PsiElement, String>()
-				{
-					@Override
-					public String fun(PsiElement element)
-					{
-						return getTitle();
-					}
-				}, new GutterIconNavigationHandler<PsiElement>()
-				{
-					@Override
-					public void navigate(MouseEvent e, PsiElement elt)
-					{
-						List<NapileElement> objects = getTargets(elt.getParent());
-						Collections.sort(objects, NapileNameComparator.INSTANCE);
+	/**
+	 * Targets of marker are calculated again by navigation
+	 */
+	@Nullable
+	protected LineMarkerInfo createLineMarker(@NotNull PsiNameIdentifierOwner element)
+	{
+		PsiElement name = element.getNameIdentifier();
+		if(name == null)
+			return null;
 
-						PsiElementListNavigator.openTargets(e, objects.toArray(new NapileElement[objects.size()]), getTitle(), getTitle(), new DefaultPsiElementCellRenderer());
-					}
-				}, GutterIconRenderer.Alignment.LEFT
-				);
+		return new LineMarkerInfo<PsiElement>(name, name.getTextRange(), getIcon(), Pass.UPDATE_OVERRIDEN_MARKERS, new Function<PsiElement, String>()
+		{
+			@Override
+			public String fun(PsiElement element)
+			{
+				return getTitle();
 			}
-		}
-		return null;
+		}, new GutterIconNavigationHandler<PsiElement>()
+		{
+			@Override
+			public void navigate(MouseEvent e, PsiElement elt)
+			{
+				List<NapileElement> objects = getTargets(elt.getParent());
+				Collections.sort(objects, NapileNameComparator.INSTANCE);
+
+				PsiElementListNavigator.openTargets(e, objects.toArray(new NapileElement[objects.size()]), getTitle(), getTitle(), new DefaultPsiElementCellRenderer());
+			}
+		}, GutterIconRenderer.Alignment.LEFT
+		);
 	}
 
 	@NotNull
@@ -33,6 +33,7 @@ import org.napile.compiler.lang.descriptors.ConstructorDescriptor;
 import org.napile.compiler.lang.psi.NapileCallExpression;
 import org.napile.compiler.lang.psi.NapileDelegationToSuperCall;
 import org.napile.compiler.lang.psi.NapileElement;
+import org.napile.compiler.lang.psi.NapileExpression;
 import org.napile.compiler.lang.psi.NapileFile;
 import org.napile.compiler.lang.psi.ValueArgument;
 import org.napile.compiler.lang.psi.util.Constant;
@@ -120,14 +121,20 @@ public class NapileColorElementProvider implements ElementColorProvider
 
 		if(element instanceof NapileCallExpression)
 		{
-			final AnalyzeExhaust analyzeExhaust = ModuleAnalyzerUtil.lastAnalyze((NapileFile) element.getContainingFile());
+			NapileExpression calleeExpression = ((NapileCallExpression) element).getCalleeExpression();
+			if(calleeExpression == null)
+			{
+				return null;
+			}
 
-			final ResolvedCall<? extends CallableDescriptor> resolvedCall = analyzeExhaust.getBindingTrace().get(BindingTraceKeys.RESOLVED_CALL, ((NapileCallExpression) element).getCalleeExpression());
+			final ResolvedCall<? extends CallableDescriptor> resolvedCall = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.RESOLVED_CALL, calleeExpression);
 
 			CallableDescriptor descriptor = resolvedCall == null ? null : resolvedCall.getResultingDescriptor();
 
 			if(descriptor instanceof ConstructorDescriptor && DescriptorUtils.getFQName(descriptor.getContainingDeclaration()).equals(RGB_COLOR))
 			{
+				final AnalyzeExhaust analyzeExhaust = ModuleAnalyzerUtil.lastAnalyze((NapileFile) element.getContainingFile());
+
 				return getColorOf(analyzeExhaust.getBindingTrace(), ((NapileCallExpression) element).getValueArguments());
 			}
 		}
@@ -63,7 +63,7 @@ public class RecursiveLineMarkerProvider implements LineMarkerProvider
 			{
 				NapileCallExpression exp = (NapileCallExpression) psiElement;
 
-				AnalyzeExhaust analyzeExhaust = ModuleAnalyzerUtil.lastAnalyze(exp.getContainingFile());
+				AnalyzeExhaust analyzeExhaust = ModuleAnalyzerUtil.fileAnalyze(exp.getContainingFile());
 				BindingTrace bindingContext = analyzeExhaust.getBindingTrace();
 
 				ResolvedCall<? extends CallableDescriptor> resolvedCall = bindingContext.get(BindingTraceKeys.RESOLVED_CALL, exp.getCalleeExpression());
@@ -17,8 +17,12 @@
 package org.napile.idea.plugin.findUsages;
 
 import org.jetbrains.annotations.NotNull;
+import org.napile.idea.plugin.search.NapileOccurrenceSearch;
 import com.intellij.find.findUsages.FindUsagesHandler;
+import com.intellij.find.findUsages.FindUsagesOptions;
 import com.intellij.psi.PsiElement;
+import com.intellij.usageView.UsageInfo;
+import com.intellij.util.Processor;
 
 /**
  * @author yole
@@ -29,4 +33,12 @@ public class NapileFindClassUsagesHandler extends FindUsagesHandler
 	{
 		super(psiElement);
 	}
+
+	@Override
+	public boolean processElementUsages(@NotNull PsiElement element, @NotNull Processor<UsageInfo> processor, @NotNull FindUsagesOptions options)
+	{
+		FindUsagesOptions restrictedOptions = options.clone();
+		restrictedOptions.searchScope = NapileOccurrenceSearch.restrictScope(element, options.searchScope);
+		return super.processElementUsages(element, processor, restrictedOptions);
+	}
 }
@@ -32,6 +32,7 @@ import org.napile.compiler.lang.psi.NapileReferenceExpression;
 import org.napile.compiler.lang.resolve.BindingTrace;
 import org.napile.idea.plugin.editor.highlight.NapileHighlightPass;
 import org.napile.idea.plugin.editor.highlight.messageRendering.IdeErrorMessages;
+import org.napile.idea.plugin.module.DiagnosticIndex;
 import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
 import org.napile.idea.plugin.quickfix.NapileIntentionActionFactory;
 import org.napile.idea.plugin.quickfix.QuickFixes;
@@ -96,14 +97,10 @@ public class NapilePsiChecker implements Annotator
 				boolean isInContent = ProjectFileIndex.SERVICE.getInstance(element.getProject()).isInContent(file.getVirtualFile());
 				if(errorReportingEnabled && isInContent)
 				{
-					Collection<Diagnostic> diagnostics = Sets.newLinkedHashSet(bindingContext.getDiagnostics());
+					Collection<Diagnostic> diagnostics = Sets.newLinkedHashSet(DiagnosticIndex.getInstance(bindingContext).getDiagnostics(file));
 					Set<PsiElement> redeclarations = Sets.newHashSet();
 					for(Diagnostic diagnostic : diagnostics)
 					{
-						// This is needed because we have the same context for all files
-						if(diagnostic.getPsiFile() != file)
-							continue;
-
 						registerDiagnosticAnnotations(diagnostic, redeclarations, holder);
 					}
 				}
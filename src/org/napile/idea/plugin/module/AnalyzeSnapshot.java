@@ -0,0 +1,275 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.lang.diagnostics.Diagnostic;
+import org.napile.compiler.lang.diagnostics.Severity;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.idea.plugin.highlighter.NapilePsiChecker;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.containers.MultiMap;
+import com.intellij.util.io.IOUtil;
+
+/**
+ * Lightweight copy of diagnostics from last analyze, which is stored between ide restarts. Used for highlight opened files,
+ * before first analyze is done. Entries of file are returned only if file text is not changed after snapshot
+ *
+ * @author VISTALL
+ * @since 11:15/30.04.13
+ */
+public class AnalyzeSnapshot
+{
+	public static class Entry
+	{
+		private final Severity severity;
+		private final TextRange range;
+		private final String message;
+		private final String tooltip;
+
+		public Entry(@NotNull Severity severity, @NotNull TextRange range, @NotNull String message, @NotNull String tooltip)
+		{
+			this.severity = severity;
+			this.range = range;
+			this.message = message;
+			this.tooltip = tooltip;
+		}
+
+		@NotNull
+		public Severity getSeverity()
+		{
+			return severity;
+		}
+
+		@NotNull
+		public TextRange getRange()
+		{
+			return range;
+		}
+
+		@NotNull
+		public String getMessage()
+		{
+			return message;
+		}
+
+		@NotNull
+		public String getTooltip()
+		{
+			return tooltip;
+		}
+	}
+
+	private static class FileSnapshot
+	{
+		private final int textLength;
+		private final int textHash;
+		private final List<Entry> entries;
+
+		private FileSnapshot(int textLength, int textHash, List<Entry> entries)
+		{
+			this.textLength = textLength;
+			this.textHash = textHash;
+			this.entries = entries;
+		}
+	}
+
+	private static final Logger LOGGER = Logger.getInstance(AnalyzeSnapshot.class);
+
+	private static final int VERSION = 1;
+
+	public static final AnalyzeSnapshot EMPTY = new AnalyzeSnapshot(Collections.<String, FileSnapshot>emptyMap());
+
+	private final Map<String, FileSnapshot> files;
+
+	private AnalyzeSnapshot(@NotNull Map<String, FileSnapshot> files)
+	{
+		this.files = files;
+	}
+
+	@NotNull
+	public List<Entry> getEntries(@NotNull NapileFile file)
+	{
+		VirtualFile virtualFile = file.getOriginalFile().getVirtualFile();
+		if(virtualFile == null)
+			return Collections.emptyList();
+
+		FileSnapshot fileSnapshot = files.get(virtualFile.getUrl());
+		if(fileSnapshot == null || fileSnapshot.textLength != file.getTextLength() || fileSnapshot.textHash != file.getText().hashCode())
+			return Collections.emptyList();
+
+		return fileSnapshot.entries;
+	}
+
+	@NotNull
+	public static AnalyzeSnapshot load(@NotNull File ioFile)
+	{
+		if(!ioFile.exists())
+			return EMPTY;
+
+		DataInputStream stream = null;
+		try
+		{
+			stream = new DataInputStream(new BufferedInputStream(new FileInputStream(ioFile)));
+			if(stream.readInt() != VERSION)
+				return EMPTY;
+
+			Map<String, FileSnapshot> files = new HashMap<String, FileSnapshot>();
+			int fileCount = stream.readInt();
+			for(int i = 0; i < fileCount; i++)
+			{
+				String url = IOUtil.readString(stream);
+				int textLength = stream.readInt();
+				int textHash = stream.readInt();
+
+				int entryCount = stream.readInt();
+				List<Entry> entries = new ArrayList<Entry>(entryCount);
+				for(int j = 0; j < entryCount; j++)
+				{
+					Severity severity = Severity.values()[stream.readByte()];
+					int startOffset = stream.readInt();
+					int endOffset = stream.readInt();
+					String message = IOUtil.readString(stream);
+					String tooltip = IOUtil.readString(stream);
+					entries.add(new Entry(severity, new TextRange(startOffset, endOffset), message, tooltip));
+				}
+				files.put(url, new FileSnapshot(textLength, textHash, entries));
+			}
+			return new AnalyzeSnapshot(files);
+		}
+		catch(Exception e)
+		{
+			LOGGER.warn("Failed to load analyze snapshot: " + ioFile.getPath(), e);
+			return EMPTY;
+		}
+		finally
+		{
+			close(stream);
+		}
+	}
+
+	/**
+	 * Must be called inside read action
+	 */
+	public static void save(@NotNull File ioFile, @NotNull AnalyzeExhaust analyzeExhaust)
+	{
+		MultiMap<PsiFile, Diagnostic> diagnostics = new MultiMap<PsiFile, Diagnostic>();
+		for(Diagnostic diagnostic : analyzeExhaust.getBindingTrace().getDiagnostics())
+		{
+			if(diagnostic.isValid())
+				diagnostics.putValue(diagnostic.getPsiFile(), diagnostic);
+		}
+
+		// snapshot is written to temp file and renamed over target, crash or cancel can not leave truncated snapshot
+		File tempFile = new File(ioFile.getPath() + ".tmp");
+		boolean written = false;
+		DataOutputStream stream = null;
+		try
+		{
+			FileUtil.createParentDirs(ioFile);
+
+			stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			stream.writeInt(VERSION);
+
+			List<PsiFile> psiFiles = new ArrayList<PsiFile>();
+			for(PsiFile psiFile : diagnostics.keySet())
+			{
+				if(psiFile instanceof NapileFile && psiFile.isValid() && psiFile.getVirtualFile() != null)
+					psiFiles.add(psiFile);
+			}
+
+			stream.writeInt(psiFiles.size());
+			for(PsiFile psiFile : psiFiles)
+			{
+				IOUtil.writeString(psiFile.getVirtualFile().getUrl(), stream);
+				stream.writeInt(psiFile.getTextLength());
+				stream.writeInt(psiFile.getText().hashCode());
+
+				List<Entry> entries = new ArrayList<Entry>();
+				for(Diagnostic diagnostic : diagnostics.get(psiFile))
+				{
+					String message = NapilePsiChecker.getDefaultMessage(diagnostic);
+					String tooltip = NapilePsiChecker.getTooltipMessage(diagnostic);
+					for(TextRange textRange : diagnostic.getTextRanges())
+						entries.add(new Entry(diagnostic.getSeverity(), textRange, message, tooltip));
+				}
+
+				stream.writeInt(entries.size());
+				for(Entry entry : entries)
+				{
+					stream.writeByte(entry.severity.ordinal());
+					stream.writeInt(entry.range.getStartOffset());
+					stream.writeInt(entry.range.getEndOffset());
+					IOUtil.writeString(entry.message, stream);
+					IOUtil.writeString(entry.tooltip, stream);
+				}
+			}
+
+			stream.close();
+			stream = null;
+
+			FileUtil.rename(tempFile, ioFile);
+			written = true;
+		}
+		catch(IOException e)
+		{
+			LOGGER.warn("Failed to save analyze snapshot: " + ioFile.getPath(), e);
+		}
+		finally
+		{
+			close(stream);
+
+			if(!written)
+				FileUtil.delete(tempFile);
+		}
+	}
+
+	private static void close(Closeable closeable)
+	{
+		if(closeable == null)
+			return;
+
+		try
+		{
+			closeable.close();
+		}
+		catch(IOException e)
+		{
+			LOGGER.warn(e);
+		}
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.lang.diagnostics.Diagnostic;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.containers.MultiMap;
+
+/**
+ * Diagnostics of analyze result, grouped by file and sorted by text range. Index is built once for each binding trace
+ *
+ * @author VISTALL
+ * @since 14:30/01.05.13
+ */
+public class DiagnosticIndex
+{
+	private static class RangeEntry
+	{
+		private final TextRange range;
+		private final Diagnostic diagnostic;
+
+		private RangeEntry(TextRange range, Diagnostic diagnostic)
+		{
+			this.range = range;
+			this.diagnostic = diagnostic;
+		}
+	}
+
+	/**
+	 * Entries of file sorted by start offset, and maximal end offset of each entries prefix - it's not decreasing,
+	 * so first entry which can intersect range is found by binary search too
+	 */
+	private static class FileRanges
+	{
+		private final List<RangeEntry> entries;
+		private final int[] maxEndOffsets;
+
+		private FileRanges(List<RangeEntry> entries)
+		{
+			this.entries = entries;
+
+			maxEndOffsets = new int[entries.size()];
+			int maxEndOffset = -1;
+			for(int i = 0; i < maxEndOffsets.length; i++)
+				maxEndOffsets[i] = maxEndOffset = Math.max(maxEndOffset, entries.get(i).range.getEndOffset());
+		}
+	}
+
+	private static final Comparator<RangeEntry> START_OFFSET_COMPARATOR = new Comparator<RangeEntry>()
+	{
+		@Override
+		public int compare(RangeEntry o1, RangeEntry o2)
+		{
+			return o1.range.getStartOffset() - o2.range.getStartOffset();
+		}
+	};
+
+	private static final Map<BindingTrace, DiagnosticIndex> ourIndexes = new WeakHashMap<BindingTrace, DiagnosticIndex>();
+
+	@NotNull
+	public static DiagnosticIndex getInstance(@NotNull BindingTrace bindingTrace)
+	{
+		synchronized(ourIndexes)
+		{
+			DiagnosticIndex index = ourIndexes.get(bindingTrace);
+			if(index == null)
+			{
+				index = new DiagnosticIndex(bindingTrace.getDiagnostics());
+				ourIndexes.put(bindingTrace, index);
+			}
+			return index;
+		}
+	}
+
+	private final MultiMap<PsiFile, Diagnostic> diagnosticsByFile = new MultiMap<PsiFile, Diagnostic>();
+	private final Map<PsiFile, FileRanges> rangesByFile = new HashMap<PsiFile, FileRanges>();
+	private final AtomicBoolean problemsReported = new AtomicBoolean();
+
+	private DiagnosticIndex(@NotNull Collection<Diagnostic> diagnostics)
+	{
+		Map<PsiFile, List<RangeEntry>> entriesByFile = new HashMap<PsiFile, List<RangeEntry>>();
+		for(Diagnostic diagnostic : diagnostics)
+		{
+			PsiFile file = diagnostic.getPsiFile();
+			diagnosticsByFile.putValue(file, diagnostic);
+			if(!diagnostic.isValid())
+				continue;
+
+			List<RangeEntry> entries = entriesByFile.get(file);
+			if(entries == null)
+				entriesByFile.put(file, entries = new ArrayList<RangeEntry>());
+
+			for(TextRange textRange : diagnostic.getTextRanges())
+				entries.add(new RangeEntry(textRange, diagnostic));
+		}
+
+		for(Map.Entry<PsiFile, List<RangeEntry>> entry : entriesByFile.entrySet())
+		{
+			Collections.sort(entry.getValue(), START_OFFSET_COMPARATOR);
+			rangesByFile.put(entry.getKey(), new FileRanges(entry.getValue()));
+		}
+	}
+
+	@NotNull
+	public Set<PsiFile> getFiles()
+	{
+		return diagnosticsByFile.keySet();
+	}
+
+	@NotNull
+	public Collection<Diagnostic> getDiagnostics(@NotNull PsiFile file)
+	{
+		return diagnosticsByFile.get(file);
+	}
+
+	/**
+	 * @return diagnostics of file, which have text range intersected with given range
+	 */
+	@NotNull
+	public Collection<Diagnostic> getDiagnostics(@NotNull PsiFile file, @NotNull TextRange range)
+	{
+		FileRanges fileRanges = rangesByFile.get(file);
+		if(fileRanges == null)
+			return Collections.emptyList();
+
+		final List<RangeEntry> entries = fileRanges.entries;
+
+		// first entry, which starts after range end
+		int low = 0;
+		int high = entries.size();
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if(entries.get(middle).range.getStartOffset() <= range.getEndOffset())
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		final int end = low;
+
+		// first entry, whose prefix reaches range start - all entries before it end before range
+		low = 0;
+		high = end;
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if(fileRanges.maxEndOffsets[middle] < range.getStartOffset())
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		Set<Diagnostic> result = new LinkedHashSet<Diagnostic>();
+		for(int i = low; i < end; i++)
+		{
+			RangeEntry entry = entries.get(i);
+			if(entry.range.getEndOffset() >= range.getStartOffset())
+				result.add(entry.diagnostic);
+		}
+		return new ArrayList<Diagnostic>(result);
+	}
+
+	/**
+	 * Problems of files, which are not opened, are reported once for analyze result
+	 */
+	public boolean isProblemsReported()
+	{
+		return problemsReported.get();
+	}
+
+	/**
+	 * Must be called after problems are reported - if pass is cancelled before, next pass reports them
+	 */
+	public void markProblemsReported()
+	{
+		problemsReported.set(true);
+	}
+}
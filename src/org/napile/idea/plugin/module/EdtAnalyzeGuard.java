@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+
+/**
+ * Guard for analyze requests from dispatch thread. Requests which need new analyze are not executed on dispatch thread -
+ * last result is returned, and analyze is scheduled in background. Call sites of such requests, and of requests which
+ * block dispatch thread too long, are logged - first time as warning, next times as debug
+ *
+ * @author VISTALL
+ * @since 12:05/01.05.13
+ */
+public class EdtAnalyzeGuard
+{
+	private static final Logger LOGGER = Logger.getInstance(EdtAnalyzeGuard.class);
+
+	private static final long BLOCKING_THRESHOLD_MS = 50;
+
+	private static final Set<String> reportedCallSites = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	public static boolean isDispatchThread()
+	{
+		return ApplicationManager.getApplication().isDispatchThread();
+	}
+
+	/**
+	 * Request of new analyze on dispatch thread is replaced by last result
+	 */
+	public static void redirected(@NotNull String request)
+	{
+		report(request + " is redirected to background analyze", 0);
+	}
+
+	/**
+	 * Check time of request, started at startTime, if it's executed on dispatch thread
+	 */
+	public static void checkBlocking(@NotNull String request, long startTime)
+	{
+		if(!isDispatchThread())
+			return;
+
+		long time = System.currentTimeMillis() - startTime;
+		if(time >= BLOCKING_THRESHOLD_MS)
+			report(request + " blocked dispatch thread for " + time + " ms", time);
+	}
+
+	private static void report(@NotNull String message, long time)
+	{
+		Throwable trace = new Throwable(message);
+		String callSite = findCallSite(trace);
+		if(reportedCallSites.add(callSite))
+		{
+			LOGGER.warn(message + " at " + callSite, trace);
+		}
+		else if(LOGGER.isDebugEnabled())
+		{
+			LOGGER.debug(message + " at " + callSite);
+		}
+	}
+
+	@NotNull
+	private static String findCallSite(@NotNull Throwable trace)
+	{
+		for(StackTraceElement element : trace.getStackTrace())
+		{
+			String className = element.getClassName();
+			if(className.equals(EdtAnalyzeGuard.class.getName()) || className.equals(ModuleAnalyzerUtil.class.getName()))
+				continue;
+			return element.toString();
+		}
+		return "<unknown>";
+	}
+}
@@ -16,8 +16,11 @@
 
 package org.napile.idea.plugin.module;
 
+import java.util.List;
+
 import org.jetbrains.annotations.NotNull;
 import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.lang.psi.NapileFile;
 import org.napile.compiler.lang.resolve.BindingTrace;
 import org.napile.compiler.lang.resolve.BodiesResolveContext;
 import org.napile.idea.plugin.module.impl.DummyModuleAnalyzerImpl;
@@ -58,4 +61,25 @@ public abstract class ModuleAnalyzer
 
 	@NotNull
 	public abstract AnalyzeExhaust getTestSourceAnalyze(boolean updateIfNeed);
+
+	/**
+	 * Request analyze in background thread, result will be published to {@link ModuleAnalyzerListener#TOPIC}
+	 */
+	public abstract void scheduleAnalyze(boolean test);
+
+	/**
+	 * Publish result to {@link ModuleAnalyzerListener#TOPIC}, if it is not published yet
+	 */
+	public abstract void publish(boolean test, @NotNull AnalyzeExhaust analyzeExhaust);
+
+	/**
+	 * @return true if last analyze result is computed after last psi change
+	 */
+	public abstract boolean isUpToDate(boolean test);
+
+	/**
+	 * @return diagnostics of file from analyze of previous ide session, if module is not analyzed yet
+	 */
+	@NotNull
+	public abstract List<AnalyzeSnapshot.Entry> getSnapshotEntries(boolean test, @NotNull NapileFile file);
 }
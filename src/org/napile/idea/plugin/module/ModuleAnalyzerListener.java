@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module;
+
+import java.util.EventListener;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import com.intellij.openapi.module.Module;
+import com.intellij.util.messages.Topic;
+
+/**
+ * @author VISTALL
+ * @since 16:02/25.04.13
+ */
+public interface ModuleAnalyzerListener extends EventListener
+{
+	Topic<ModuleAnalyzerListener> TOPIC = Topic.create("napile module analyzed", ModuleAnalyzerListener.class);
+
+	/**
+	 * Called from background thread, after scheduled analyze of module is finished
+	 *
+	 * @param test is test source analyze
+	 */
+	void moduleAnalyzed(@NotNull Module module, boolean test, @NotNull AnalyzeExhaust analyzeExhaust);
+}
@@ -16,18 +16,35 @@
 
 package org.napile.idea.plugin.module;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.analyzer.AnalyzeContext;
 import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
 import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
 import org.napile.compiler.lang.psi.NapileElement;
 import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
 import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.util.slicedmap.ReadOnlySlice;
+import org.napile.idea.plugin.module.impl.PartitionedBindingTrace;
+import com.google.common.base.Predicates;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.roots.OrderEntry;
 import com.intellij.openapi.roots.libraries.LibraryUtil;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 
 /**
  * @author VISTALL
@@ -35,6 +52,8 @@ import com.intellij.openapi.vfs.VirtualFile;
  */
 public class ModuleAnalyzerUtil
 {
+	private static final Key<CachedValue<AnalyzeExhaust>> FILE_ANALYZE_KEY = Key.create("napile-file-analyze");
+
 	@NotNull
 	public static AnalyzeExhaust lastAnalyze(@NotNull final NapileFile file)
 	{
@@ -52,6 +71,68 @@ public class ModuleAnalyzerUtil
 		return analyzeOrGet(file, true);
 	}
 
+	/**
+	 * Return analyze of module, if it's up to date. Otherwise file is analyzed alone - bodies are resolved only for this file,
+	 * and only declarations of files which it references are resolved. Descriptors of result are not same as descriptors of module
+	 * analyze, so it's only for background features, which need only current file data. UI features must use {@link #lastAnalyze}
+	 */
+	@NotNull
+	public static AnalyzeExhaust fileAnalyze(@NotNull final NapileFile file)
+	{
+		final Module module = findModule(file);
+		if(module == null || DumbService.getInstance(file.getProject()).isDumb())
+		{
+			return lastAnalyze(file);
+		}
+
+		final boolean test = isTestFile(module, file);
+		final ModuleAnalyzer instance = ModuleAnalyzer.getInstance(module);
+		if(instance.isUpToDate(test))
+		{
+			return test ? instance.getTestSourceAnalyze(false) : instance.getSourceAnalyze(false);
+		}
+
+		if(EdtAnalyzeGuard.isDispatchThread())
+		{
+			CachedValue<AnalyzeExhaust> cachedValue = file.getUserData(FILE_ANALYZE_KEY);
+			if(cachedValue == null || !cachedValue.hasUpToDateValue())
+			{
+				EdtAnalyzeGuard.redirected("fileAnalyze");
+				instance.scheduleAnalyze(test);
+				return lastAnalyze(file);
+			}
+		}
+
+		return CachedValuesManager.getManager(file.getProject()).getCachedValue(file, FILE_ANALYZE_KEY, new CachedValueProvider<AnalyzeExhaust>()
+		{
+			@Override
+			public Result<AnalyzeExhaust> compute()
+			{
+				AnalyzeContext analyzeContext = ModuleCollector.getFileAnalyzeContext(file.getProject(), file, test, module);
+				AnalyzeExhaust analyzeExhaust = AnalyzerFacade.analyzeFiles(file.getProject(), analyzeContext, Predicates.<NapileFile>equalTo(file));
+				return Result.create(analyzeExhaust, PsiModificationTracker.MODIFICATION_COUNT);
+			}
+		}, false);
+	}
+
+	/**
+	 * Return body data (expression types, resolved calls, scopes) of element from last analyze. Body data of files which are not opened
+	 * in editor can be evicted from memory - in this case module is analyzed again in current thread. Dispatch thread never wait
+	 * for analyze, analyze is only scheduled, and null is returned
+	 */
+	@Nullable
+	public static <K extends PsiElement, V> V getBodyData(@NotNull ReadOnlySlice<K, V> slice, @NotNull K element)
+	{
+		NapileFile file = (NapileFile) element.getContainingFile();
+		BindingTrace bindingTrace = lastAnalyze(file).getBindingTrace();
+		V value = bindingTrace.get(slice, element);
+		if(value == null && PartitionedBindingTrace.isEvicted(bindingTrace, element))
+		{
+			value = analyze(file).getBindingTrace().get(slice, element);
+		}
+		return value;
+	}
+
 	public static <T extends DeclarationDescriptor> T getDescriptorOrAnalyze(@NotNull NapileElement napileElement)
 	{
 		AnalyzeExhaust analyzeExhaust = lastAnalyze(napileElement.getContainingFile());
@@ -61,35 +142,102 @@ public class ModuleAnalyzerUtil
 		return (T) declarationDescriptor;
 	}
 
-	@NotNull
-	private static AnalyzeExhaust analyzeOrGet(@NotNull final NapileFile file, boolean updateIfNeed)
+	/**
+	 * Request analyze of file module in background, if last analyze is not up to date. Result will be published to
+	 * {@link ModuleAnalyzerListener#TOPIC}
+	 *
+	 * @return true if last analyze is up to date
+	 */
+	public static boolean scheduleAnalyze(@NotNull final NapileFile file)
 	{
-		Module module = ModuleUtilCore.findModuleForPsiElement(file);
+		Module module = findModule(file);
 		if(module == null)
 		{
-			final OrderEntry libraryEntry = LibraryUtil.findLibraryEntry(file.getVirtualFile(), file.getProject());
-			if(libraryEntry != null)
-			{
-				module = libraryEntry.getOwnerModule();
-			}
+			return true;
 		}
 
+		final boolean test = isTestFile(module, file);
+		final ModuleAnalyzer instance = ModuleAnalyzer.getInstance(module);
+		if(instance.isUpToDate(test))
+		{
+			return true;
+		}
+
+		instance.scheduleAnalyze(test);
+		return false;
+	}
+
+	/**
+	 * @return diagnostics of file stored by previous ide session, if module of file is not analyzed yet
+	 */
+	@NotNull
+	public static List<AnalyzeSnapshot.Entry> getSnapshotEntries(@NotNull final NapileFile file)
+	{
+		Module module = findModule(file);
 		if(module == null)
 		{
-			return ModuleAnalyzer.EMPTY;
+			return Collections.emptyList();
 		}
 
-		ModuleRootManager moduleRootManager = ModuleRootManager.getInstance(module);
+		return ModuleAnalyzer.getInstance(module).getSnapshotEntries(isTestFile(module, file), file);
+	}
 
-		final VirtualFile virtualFile = file.getVirtualFile();
-		if(virtualFile == null)
+	@NotNull
+	private static AnalyzeExhaust analyzeOrGet(@NotNull final NapileFile file, boolean updateIfNeed)
+	{
+		final long startTime = System.currentTimeMillis();
+
+		Module module = findModule(file);
+		if(module == null)
 		{
 			return ModuleAnalyzer.EMPTY;
 		}
-		final boolean test = moduleRootManager.getFileIndex().isInTestSourceContent(virtualFile);
+
+		final boolean test = isTestFile(module, file);
 
 		final ModuleAnalyzer instance = ModuleAnalyzer.getInstance(module);
 
-		return test ? instance.getTestSourceAnalyze(updateIfNeed) : instance.getSourceAnalyze(updateIfNeed);
+		// dispatch thread never wait for analyze - it get last result, and new one will be published to ModuleAnalyzerListener.TOPIC
+		if(updateIfNeed && EdtAnalyzeGuard.isDispatchThread() && !instance.isUpToDate(test))
+		{
+			EdtAnalyzeGuard.redirected("analyze");
+			instance.scheduleAnalyze(test);
+			updateIfNeed = false;
+		}
+
+		try
+		{
+			return test ? instance.getTestSourceAnalyze(updateIfNeed) : instance.getSourceAnalyze(updateIfNeed);
+		}
+		finally
+		{
+			EdtAnalyzeGuard.checkBlocking(updateIfNeed ? "analyze" : "lastAnalyze", startTime);
+		}
+	}
+
+	@Nullable
+	private static Module findModule(@NotNull NapileFile file)
+	{
+		if(file.getVirtualFile() == null)
+		{
+			return null;
+		}
+
+		Module module = ModuleUtilCore.findModuleForPsiElement(file);
+		if(module == null)
+		{
+			final OrderEntry libraryEntry = LibraryUtil.findLibraryEntry(file.getVirtualFile(), file.getProject());
+			if(libraryEntry != null)
+			{
+				module = libraryEntry.getOwnerModule();
+			}
+		}
+		return module;
+	}
+
+	private static boolean isTestFile(@NotNull Module module, @NotNull NapileFile file)
+	{
+		final VirtualFile virtualFile = file.getVirtualFile();
+		return virtualFile != null && ModuleRootManager.getInstance(module).getFileIndex().isInTestSourceContent(virtualFile);
 	}
 }
@@ -16,26 +16,34 @@
 
 package org.napile.idea.plugin.module;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.napile.compiler.NapileFileType;
+import org.napile.asm.resolve.name.FqName;
 import org.napile.compiler.analyzer.AnalyzeContext;
+import org.napile.compiler.lang.psi.NapileBlockExpression;
+import org.napile.compiler.lang.psi.NapileClass;
+import org.napile.compiler.lang.psi.NapileExpression;
 import org.napile.compiler.lang.psi.NapileFile;
-import org.napile.idea.plugin.module.extension.NapileModuleExtension;
-import org.napile.idea.plugin.sdk.NapileSdkType;
+import org.napile.compiler.lang.psi.NapileImportDirective;
+import org.napile.compiler.lang.psi.NapileSimpleNameExpression;
+import org.napile.compiler.lang.psi.NapileUserType;
+import org.napile.idea.plugin.sdk.NapileSdkCache;
+import org.napile.idea.plugin.stubindex.NapileShortClassNameIndex;
 import com.google.common.collect.Sets;
-import com.intellij.openapi.fileTypes.FileType;
-import com.intellij.openapi.fileTypes.FileTypeManager;
 import com.intellij.openapi.module.Module;
-import com.intellij.openapi.module.ModuleUtil;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.projectRoots.Sdk;
-import com.intellij.openapi.roots.*;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.SmartList;
 
 /**
@@ -47,95 +55,138 @@ public class ModuleCollector
 	public static AnalyzeContext getAnalyzeContext(@NotNull final Project project, @Nullable final NapileFile rootFile, final boolean test, @NotNull Module module)
 	{
 		final Set<NapileFile> analyzeFiles = Sets.newLinkedHashSet();
-		final SmartList<VirtualFile> bootpath = new SmartList<VirtualFile>();
-		final SmartList<VirtualFile> classpath = new SmartList<VirtualFile>();
 
-		ModuleRootManager rootManager = ModuleRootManager.getInstance(module);
+		ModuleSourcesCache sourcesCache = ModuleSourcesCache.getInstance(module);
 
-		for(OrderEntry orderEntry : rootManager.getOrderEntries())
+		for(Module sourceModule : sourcesCache.getSourceModules())
 		{
-			orderEntry.accept(new RootPolicy<Object>()
-			{
-				@Override
-				public Object visitLibraryOrderEntry(LibraryOrderEntry libraryOrderEntry, Object value)
-				{
-					for(VirtualFile v : libraryOrderEntry.getFiles(OrderRootType.SOURCES))
-					{
-						classpath.add(v);
-					}
-					return null;
-				}
-
-				@Override
-				public Object visitModuleJdkOrderEntry(ModuleExtensionWithSdkOrderEntry sdkOrderEntry, Object value)
-				{
-					Sdk sdk = sdkOrderEntry.getSdk();
-					if(sdk != null && sdk.getSdkType() instanceof NapileSdkType)
-					{
-						VirtualFile lib = sdk.getHomeDirectory().findChild("lib");
-						if(lib != null)
-						{
-							bootpath.add(lib);
-						}
-					}
-					return null;
-				}
-
-				@Override
-				public Object visitModuleSourceOrderEntry(ModuleSourceOrderEntry moduleSourceOrderEntry, Object value)
-				{
-					collectSourcesInModule(project, moduleSourceOrderEntry.getOwnerModule(), test, analyzeFiles, rootFile);
-					return null;
-				}
-
-				@Override
-				public Object visitModuleOrderEntry(ModuleOrderEntry moduleOrderEntry, Object value)
-				{
-					Module module = moduleOrderEntry.getModule();
-					if(module == null || !moduleOrderEntry.isExported())
-						return null;
-
-					collectSourcesInModule(project, module, test, analyzeFiles, rootFile);
-					return null;
-				}
-			}, null);
+			ModuleSourcesCache.getInstance(sourceModule).collectFiles(test, analyzeFiles, rootFile);
 		}
 
 		if(rootFile != null)
 			analyzeFiles.add(rootFile);
 
-		return new AnalyzeContext(analyzeFiles, bootpath, classpath);
+		return new AnalyzeContext(analyzeFiles, getBootpath(project, sourcesCache), new SmartList<VirtualFile>(sourcesCache.getClasspath()));
 	}
 
-	private static void collectSourcesInModule(@NotNull final Project project, @NotNull final Module module, final boolean test, @NotNull final Set<NapileFile> files, final NapileFile rootFile)
+	/**
+	 * Analyze context for file-local analyze: root file, files which declare classes referenced by its short names (from same
+	 * package and imports), and closure of files which declare types used in signatures of included files. Bodies of included
+	 * files are not followed. Files are found by stub indexes, module files are not collected
+	 */
+	public static AnalyzeContext getFileAnalyzeContext(@NotNull final Project project, @NotNull final NapileFile rootFile, final boolean test, @NotNull Module module)
 	{
-		if(ModuleUtil.getExtension(module, NapileModuleExtension.class) == null)
-			return;
+		final ModuleSourcesCache sourcesCache = ModuleSourcesCache.getInstance(module);
 
-		final ModuleFileIndex index = ModuleRootManager.getInstance(module).getFileIndex();
-		index.iterateContent(new ContentIterator()
+		GlobalSearchScope scope = null;
+		for(Module sourceModule : sourcesCache.getSourceModules())
 		{
-			@Override
-			public boolean processFile(VirtualFile file)
-			{
-				if(file.isDirectory())
-					return true;
+			GlobalSearchScope moduleScope = sourceModule.getModuleScope(test);
+			scope = scope == null ? moduleScope : scope.union(moduleScope);
+		}
 
-				if(!test && index.isInTestSourceContent(file))
-					return true;
+		final Set<NapileFile> analyzeFiles = Sets.newLinkedHashSet();
+		analyzeFiles.add(rootFile);
 
-				final FileType fileType = FileTypeManager.getInstance().getFileTypeByFile(file);
-				if(fileType != NapileFileType.INSTANCE)
-					return true;
+		if(scope != null)
+		{
+			final Deque<NapileFile> queue = new ArrayDeque<NapileFile>();
 
-				PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
-				if(psiFile instanceof NapileFile)
+			Set<String> names = collectReferencedNames(rootFile);
+			NapileFile file = rootFile;
+			while(file != null)
+			{
+				for(NapileFile dependency : collectDeclaringFiles(project, file, names, scope))
 				{
-					if(rootFile == null || rootFile.getOriginalFile() != psiFile)
-						files.add((NapileFile) psiFile);
+					if(analyzeFiles.add(dependency))
+						queue.add(dependency);
 				}
-				return true;
+
+				file = queue.poll();
+				if(file != null)
+					names = collectSignatureTypeNames(file);
+			}
+		}
+
+		return new AnalyzeContext(analyzeFiles, getBootpath(project, sourcesCache), new SmartList<VirtualFile>(sourcesCache.getClasspath()));
+	}
+
+	@NotNull
+	private static List<VirtualFile> getBootpath(@NotNull Project project, @NotNull ModuleSourcesCache sourcesCache)
+	{
+		final SmartList<VirtualFile> bootpath = new SmartList<VirtualFile>();
+		for(Sdk sdk : sourcesCache.getNapileSdks())
+		{
+			VirtualFile lib = NapileSdkCache.getInstance().getBootpath(project, sdk);
+			if(lib != null)
+			{
+				bootpath.add(lib);
 			}
-		});
+		}
+		return bootpath;
+	}
+
+	/**
+	 * @return files of scope, which declare classes with given short names, visible in file - from same package or imported
+	 */
+	@NotNull
+	private static List<NapileFile> collectDeclaringFiles(@NotNull Project project, @NotNull NapileFile file, @NotNull Set<String> names, @NotNull GlobalSearchScope scope)
+	{
+		final Set<FqName> packages = new HashSet<FqName>();
+		final Set<String> importedClasses = new HashSet<String>();
+		packages.add(file.getPackageFqName());
+		for(NapileImportDirective importDirective : file.getImportDirectives())
+		{
+			NapileExpression importedReference = importDirective.getImportedReference();
+			if(importedReference == null)
+				continue;
+
+			String fqName = StringUtil.replace(importedReference.getText(), " ", "");
+			if(importDirective.isAllUnder())
+				packages.add(new FqName(fqName));
+			else
+				importedClasses.add(fqName);
+		}
+
+		List<NapileFile> result = new ArrayList<NapileFile>();
+		for(String name : names)
+		{
+			for(NapileClass napileClass : NapileShortClassNameIndex.getInstance().get(name, project, scope))
+			{
+				FqName fqName = napileClass.getFqName();
+				if(fqName != null && (packages.contains(fqName.parent()) || importedClasses.contains(fqName.getFqName())))
+					result.add(napileClass.getContainingFile());
+			}
+		}
+		return result;
+	}
+
+	@NotNull
+	private static Set<String> collectReferencedNames(@NotNull NapileFile file)
+	{
+		Set<String> names = new HashSet<String>();
+		for(NapileSimpleNameExpression expression : PsiTreeUtil.findChildrenOfType(file, NapileSimpleNameExpression.class))
+		{
+			String name = expression.getReferencedName();
+			if(name != null)
+				names.add(name);
+		}
+		return names;
+	}
+
+	/**
+	 * @return names of types, which are used in declarations of file (super types, parameters, return types), but not in bodies
+	 */
+	@NotNull
+	private static Set<String> collectSignatureTypeNames(@NotNull NapileFile file)
+	{
+		Set<String> names = new HashSet<String>();
+		for(NapileUserType userType : PsiTreeUtil.findChildrenOfType(file, NapileUserType.class))
+		{
+			String name = userType.getReferencedName();
+			if(name != null && PsiTreeUtil.getParentOfType(userType, NapileBlockExpression.class) == null)
+				names.add(name);
+		}
+		return names;
 	}
 }
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.NapileFileType;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.idea.plugin.module.extension.NapileModuleExtension;
+import org.napile.idea.plugin.sdk.NapileSdkType;
+import com.google.common.collect.Sets;
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleServiceManager;
+import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.roots.*;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.SmartList;
+import com.intellij.util.messages.MessageBusConnection;
+
+/**
+ * Cache of napile files inside module content, and order entries of module, which used for build analyze context.
+ * File sets are updated by vfs events inside module content, only changed files or directories are walked. All data is dropped after roots change
+ *
+ * @author VISTALL
+ * @since 15:05/29.04.13
+ */
+public class ModuleSourcesCache
+{
+	private static class OrderEntriesInfo
+	{
+		private final List<Module> sourceModules = new SmartList<Module>();
+		private final List<Sdk> sdks = new SmartList<Sdk>();
+		private final List<VirtualFile> classpath = new SmartList<VirtualFile>();
+	}
+
+	@NotNull
+	public static ModuleSourcesCache getInstance(@NotNull Module module)
+	{
+		return ModuleServiceManager.getService(module, ModuleSourcesCache.class);
+	}
+
+	private final Module module;
+
+	private Set<VirtualFile> productionFiles;
+	private Set<VirtualFile> testFiles;
+	private volatile OrderEntriesInfo orderEntriesInfo;
+
+	public ModuleSourcesCache(@NotNull Module module)
+	{
+		this.module = module;
+
+		MessageBusConnection connection = module.getProject().getMessageBus().connect(module);
+		connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootAdapter()
+		{
+			@Override
+			public void rootsChanged(ModuleRootEvent event)
+			{
+				dropCaches();
+			}
+		});
+		connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter()
+		{
+			@Override
+			public void after(@NotNull List<? extends VFileEvent> events)
+			{
+				for(VFileEvent event : events)
+					fileChanged(event);
+			}
+		});
+	}
+
+	/**
+	 * @return modules which sources are analyzed with this module: module itself, and exported dependency modules
+	 */
+	@NotNull
+	public List<Module> getSourceModules()
+	{
+		return getOrderEntriesInfo().sourceModules;
+	}
+
+	@NotNull
+	public List<Sdk> getNapileSdks()
+	{
+		return getOrderEntriesInfo().sdks;
+	}
+
+	@NotNull
+	public List<VirtualFile> getClasspath()
+	{
+		return getOrderEntriesInfo().classpath;
+	}
+
+	/**
+	 * Add napile files of module to collection. Test files are added only if test is true
+	 */
+	public void collectFiles(boolean test, @NotNull Collection<NapileFile> files, @Nullable NapileFile rootFile)
+	{
+		if(ModuleUtil.getExtension(module, NapileModuleExtension.class) == null)
+			return;
+
+		PsiManager psiManager = PsiManager.getInstance(module.getProject());
+
+		for(VirtualFile virtualFile : getFiles(test))
+		{
+			if(!virtualFile.isValid())
+				continue;
+
+			PsiFile psiFile = psiManager.findFile(virtualFile);
+			if(psiFile instanceof NapileFile)
+			{
+				if(rootFile == null || rootFile.getOriginalFile() != psiFile)
+					files.add((NapileFile) psiFile);
+			}
+		}
+	}
+
+	@NotNull
+	private synchronized Collection<VirtualFile> getFiles(boolean test)
+	{
+		if(productionFiles == null || testFiles == null)
+		{
+			final Set<VirtualFile> production = Sets.newLinkedHashSet();
+			final Set<VirtualFile> tests = Sets.newLinkedHashSet();
+
+			final ModuleFileIndex index = ModuleRootManager.getInstance(module).getFileIndex();
+			index.iterateContent(new ContentIterator()
+			{
+				@Override
+				public boolean processFile(VirtualFile file)
+				{
+					if(file.isDirectory())
+						return true;
+
+					if(FileTypeManager.getInstance().getFileTypeByFile(file) != NapileFileType.INSTANCE)
+						return true;
+
+					if(index.isInTestSourceContent(file))
+						tests.add(file);
+					else
+						production.add(file);
+					return true;
+				}
+			});
+
+			productionFiles = production;
+			testFiles = tests;
+		}
+
+		if(!test)
+			return Sets.newLinkedHashSet(productionFiles);
+
+		Set<VirtualFile> files = Sets.newLinkedHashSet(productionFiles);
+		files.addAll(testFiles);
+		return files;
+	}
+
+	@NotNull
+	private OrderEntriesInfo getOrderEntriesInfo()
+	{
+		OrderEntriesInfo info = orderEntriesInfo;
+		if(info == null)
+		{
+			final OrderEntriesInfo newInfo = new OrderEntriesInfo();
+			for(OrderEntry orderEntry : ModuleRootManager.getInstance(module).getOrderEntries())
+			{
+				orderEntry.accept(new RootPolicy<Object>()
+				{
+					@Override
+					public Object visitLibraryOrderEntry(LibraryOrderEntry libraryOrderEntry, Object value)
+					{
+						for(VirtualFile v : libraryOrderEntry.getFiles(OrderRootType.SOURCES))
+						{
+							newInfo.classpath.add(v);
+						}
+						return null;
+					}
+
+					@Override
+					public Object visitModuleJdkOrderEntry(ModuleExtensionWithSdkOrderEntry sdkOrderEntry, Object value)
+					{
+						Sdk sdk = sdkOrderEntry.getSdk();
+						if(sdk != null && sdk.getSdkType() instanceof NapileSdkType)
+						{
+							newInfo.sdks.add(sdk);
+						}
+						return null;
+					}
+
+					@Override
+					public Object visitModuleSourceOrderEntry(ModuleSourceOrderEntry moduleSourceOrderEntry, Object value)
+					{
+						newInfo.sourceModules.add(moduleSourceOrderEntry.getOwnerModule());
+						return null;
+					}
+
+					@Override
+					public Object visitModuleOrderEntry(ModuleOrderEntry moduleOrderEntry, Object value)
+					{
+						Module module = moduleOrderEntry.getModule();
+						if(module == null || !moduleOrderEntry.isExported())
+							return null;
+
+						newInfo.sourceModules.add(module);
+						return null;
+					}
+				}, null);
+			}
+			orderEntriesInfo = info = newInfo;
+		}
+		return info;
+	}
+
+	private synchronized void dropCaches()
+	{
+		productionFiles = null;
+		testFiles = null;
+		orderEntriesInfo = null;
+	}
+
+	private synchronized void fileChanged(@NotNull VFileEvent event)
+	{
+		if(productionFiles == null || testFiles == null || event instanceof VFileContentChangeEvent)
+			return;
+
+		// old parent and path of file or directory, which files are removed from sets
+		VirtualFile oldParent = null;
+		String oldPath = null;
+		// file or directory, which files are added to sets
+		VirtualFile newFile = null;
+		if(event instanceof VFileDeleteEvent)
+		{
+			oldParent = event.getFile().getParent();
+			oldPath = event.getPath();
+		}
+		else if(event instanceof VFileMoveEvent)
+		{
+			VFileMoveEvent moveEvent = (VFileMoveEvent) event;
+			oldParent = moveEvent.getOldParent();
+			oldPath = oldParent.getPath() + "/" + moveEvent.getFile().getName();
+			newFile = moveEvent.getFile();
+		}
+		else if(event instanceof VFilePropertyChangeEvent)
+		{
+			VFilePropertyChangeEvent propertyEvent = (VFilePropertyChangeEvent) event;
+			if(!VirtualFile.PROP_NAME.equals(propertyEvent.getPropertyName()))
+				return;
+
+			oldParent = propertyEvent.getFile().getParent();
+			if(oldParent != null)
+				oldPath = oldParent.getPath() + "/" + propertyEvent.getOldValue();
+			newFile = propertyEvent.getFile();
+		}
+		else if(event instanceof VFileCopyEvent)
+		{
+			VFileCopyEvent copyEvent = (VFileCopyEvent) event;
+			newFile = copyEvent.getNewParent().findChild(copyEvent.getNewChildName());
+		}
+		else
+		{
+			newFile = event.getFile();
+		}
+
+		// events outside of module content (and inside excluded folders, like compiler output) are ignored
+		final ModuleFileIndex index = ModuleRootManager.getInstance(module).getFileIndex();
+		if(oldPath != null)
+		{
+			if(containsContentRoot(oldPath))
+			{
+				// content root itself is moved or deleted - rebuild all
+				productionFiles = null;
+				testFiles = null;
+				return;
+			}
+
+			if(oldParent != null && oldParent.isValid() && index.isInContent(oldParent))
+			{
+				removeFiles(productionFiles, oldPath);
+				removeFiles(testFiles, oldPath);
+			}
+		}
+
+		if(newFile != null && newFile.isValid() && index.isInContent(newFile))
+		{
+			addFiles(newFile);
+		}
+	}
+
+	private boolean containsContentRoot(@NotNull String path)
+	{
+		for(VirtualFile contentRoot : ModuleRootManager.getInstance(module).getContentRoots())
+		{
+			if(FileUtil.isAncestor(path, contentRoot.getPath(), false))
+				return true;
+		}
+		return false;
+	}
+
+	private static void removeFiles(@NotNull Set<VirtualFile> files, @NotNull String path)
+	{
+		for(Iterator<VirtualFile> iterator = files.iterator(); iterator.hasNext(); )
+		{
+			if(FileUtil.isAncestor(path, iterator.next().getPath(), false))
+				iterator.remove();
+		}
+	}
+
+	/**
+	 * Only files under changed directory are walked
+	 */
+	private void addFiles(@NotNull VirtualFile fileOrDirectory)
+	{
+		final ModuleFileIndex index = ModuleRootManager.getInstance(module).getFileIndex();
+		index.iterateContentUnderDirectory(fileOrDirectory, new ContentIterator()
+		{
+			@Override
+			public boolean processFile(VirtualFile file)
+			{
+				if(file.isDirectory() || FileTypeManager.getInstance().getFileTypeByFile(file) != NapileFileType.INSTANCE)
+					return true;
+
+				if(index.isInTestSourceContent(file))
+					testFiles.add(file);
+				else
+					productionFiles.add(file);
+				return true;
+			}
+		});
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.idea.plugin.module.extension.NapileModuleExtension;
+import org.napile.idea.plugin.util.LongRunningReadTask;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.util.ConcurrencyUtil;
+import com.intellij.util.containers.ConcurrentHashSet;
+import com.intellij.util.containers.MultiMap;
+
+/**
+ * Analyze all napile modules of project after opening and after indexing. Modules without dependencies between them are analyzed in parallel,
+ * module is analyzed only after all modules it depends on
+ *
+ * @author VISTALL
+ * @since 11:15/26.04.13
+ */
+public class ProjectAnalyzeCoordinator extends AbstractProjectComponent
+{
+	private final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), ConcurrencyUtil.newNamedThreadFactory("Napile module analyzer"));
+
+	private final AtomicInteger generation = new AtomicInteger();
+
+	private volatile ProgressIndicator progressIndicator;
+
+	/**
+	 * Indicators of running module analyzes, they are canceled with {@link #progressIndicator}
+	 */
+	private final Set<ProgressIndicator> moduleIndicators = new ConcurrentHashSet<ProgressIndicator>();
+
+	public ProjectAnalyzeCoordinator(Project project)
+	{
+		super(project);
+	}
+
+	@NotNull
+	public static ProjectAnalyzeCoordinator getInstance(@NotNull Project project)
+	{
+		return project.getComponent(ProjectAnalyzeCoordinator.class);
+	}
+
+	@Override
+	public void projectOpened()
+	{
+		myProject.getMessageBus().connect(myProject).subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener()
+		{
+			@Override
+			public void enteredDumbMode()
+			{
+				cancel();
+			}
+
+			@Override
+			public void exitDumbMode()
+			{
+				analyzeAll();
+			}
+		});
+
+		// project without indexing on open has no exit of dumb mode, warm-up is not started twice if it is already started by listener
+		DumbService.getInstance(myProject).runWhenSmart(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if(progressIndicator == null)
+					analyzeAll();
+			}
+		});
+	}
+
+	@Override
+	public void disposeComponent()
+	{
+		cancel();
+		executor.shutdownNow();
+	}
+
+	public void cancel()
+	{
+		generation.incrementAndGet();
+
+		ProgressIndicator indicator = progressIndicator;
+		if(indicator != null)
+			indicator.cancel();
+
+		for(ProgressIndicator moduleIndicator : moduleIndicators)
+			moduleIndicator.cancel();
+	}
+
+	/**
+	 * Cancel previous run, and start analyze of all napile modules
+	 */
+	public void analyzeAll()
+	{
+		cancel();
+
+		final int currentGeneration = generation.get();
+		final ProgressIndicator indicator = new ProgressIndicatorBase();
+		progressIndicator = indicator;
+
+		final Map<Module, AtomicInteger> waitCount = new HashMap<Module, AtomicInteger>();
+		final MultiMap<Module, Module> dependents = new MultiMap<Module, Module>();
+
+		List<Module> roots = ApplicationManager.getApplication().runReadAction(new Computable<List<Module>>()
+		{
+			@Override
+			public List<Module> compute()
+			{
+				return buildGraph(waitCount, dependents);
+			}
+		});
+
+		for(Module module : roots)
+			submit(module, currentGeneration, indicator, waitCount, dependents);
+	}
+
+	private List<Module> buildGraph(Map<Module, AtomicInteger> waitCount, MultiMap<Module, Module> dependents)
+	{
+		// modules are sorted by dependencies, dependencies inside cycles are ignored - they will be analyzed in any order
+		Module[] sortedModules = ModuleManager.getInstance(myProject).getSortedModules();
+		Map<Module, Integer> order = new HashMap<Module, Integer>();
+		for(int i = 0; i < sortedModules.length; i++)
+			order.put(sortedModules[i], i);
+
+		List<Module> roots = new ArrayList<Module>();
+		for(Module module : sortedModules)
+		{
+			if(!isNapileModule(module))
+				continue;
+
+			int count = 0;
+			for(Module dependency : ModuleRootManager.getInstance(module).getDependencies())
+			{
+				Integer index = order.get(dependency);
+				if(index == null || index >= order.get(module) || !isNapileModule(dependency))
+					continue;
+
+				dependents.putValue(dependency, module);
+				count++;
+			}
+
+			waitCount.put(module, new AtomicInteger(count));
+			if(count == 0)
+				roots.add(module);
+		}
+		return roots;
+	}
+
+	private void submit(final Module module, final int currentGeneration, final ProgressIndicator indicator, final Map<Module, AtomicInteger> waitCount, final MultiMap<Module, Module> dependents)
+	{
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if(generation.get() != currentGeneration || module.isDisposed())
+					return;
+
+				// write action cancel only analyze of this module, it will be restarted after it
+				ProgressIndicator moduleIndicator = new ProgressIndicatorBase();
+				moduleIndicators.add(moduleIndicator);
+				try
+				{
+					// cancel() can be called before indicator is added
+					if(indicator.isCanceled())
+						return;
+
+					analyze(module, moduleIndicator, indicator);
+				}
+				catch(ProcessCanceledException e)
+				{
+					if(!indicator.isCanceled())
+						submit(module, currentGeneration, indicator, waitCount, dependents);
+					return;
+				}
+				finally
+				{
+					moduleIndicators.remove(moduleIndicator);
+				}
+
+				for(Module dependent : dependents.get(module))
+				{
+					AtomicInteger count = waitCount.get(dependent);
+					if(count != null && count.decrementAndGet() == 0)
+						submit(dependent, currentGeneration, indicator, waitCount, dependents);
+				}
+			}
+		});
+	}
+
+	private void analyze(final Module module, final ProgressIndicator moduleIndicator, final ProgressIndicator indicator)
+	{
+		LongRunningReadTask.runWithWriteActionPriority(moduleIndicator, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if(indicator.isCanceled())
+					throw new ProcessCanceledException();
+
+				ModuleAnalyzer moduleAnalyzer = ModuleAnalyzer.getInstance(module);
+				if(moduleAnalyzer.isUpToDate(false))
+					return;
+
+				AnalyzeExhaust analyzeExhaust = moduleAnalyzer.getSourceAnalyze(true);
+
+				moduleAnalyzer.publish(false, analyzeExhaust);
+			}
+		});
+	}
+
+	private static boolean isNapileModule(Module module)
+	{
+		return ModuleUtil.getExtension(module, NapileModuleExtension.class) != null;
+	}
+}
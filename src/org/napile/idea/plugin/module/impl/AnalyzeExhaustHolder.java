@@ -0,0 +1,232 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.idea.plugin.module.AnalyzeSnapshot;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+
+/**
+ * Holds last analyze result of module source or test flavour. Concurrent requests with same psi modification stamp
+ * wait for one computation, analyzes with different stamps are run one by one - each next analyze is based on previous result
+ *
+ * @author VISTALL
+ * @since 14:40/24.04.13
+ */
+public class AnalyzeExhaustHolder
+{
+	private static final long WAIT_TIMEOUT_MS = 20;
+
+	private final boolean test;
+	private final ChangedFilesTracker changedFiles = new ChangedFilesTracker();
+	private final ReentrantLock analyzeLock = new ReentrantLock();
+
+	private volatile AnalyzeExhaust exhaust;
+	private volatile long exhaustStamp = -1;
+	private volatile AnalyzeSnapshot snapshot;
+
+	private FutureTask<AnalyzeExhaust> runningTask;
+	private long runningStamp = -1;
+
+	public AnalyzeExhaustHolder(boolean test)
+	{
+		this.test = test;
+	}
+
+	public boolean isTest()
+	{
+		return test;
+	}
+
+	@NotNull
+	public ChangedFilesTracker getChangedFiles()
+	{
+		return changedFiles;
+	}
+
+	@Nullable
+	public AnalyzeExhaust getExhaust()
+	{
+		return exhaust;
+	}
+
+	public long getExhaustStamp()
+	{
+		return exhaustStamp;
+	}
+
+	/**
+	 * Next request will analyze module again, even if psi is not changed
+	 */
+	public synchronized void markOutdated()
+	{
+		exhaustStamp = -1;
+	}
+
+	/**
+	 * @return snapshot of analyze from previous ide session, or null if it's not loaded yet
+	 */
+	@Nullable
+	public AnalyzeSnapshot getSnapshot()
+	{
+		return snapshot;
+	}
+
+	public void setSnapshot(@Nullable AnalyzeSnapshot snapshot)
+	{
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Return analyze result for given stamp (or newer). If result is not computed, and no other thread computing it - compute it in current thread
+	 */
+	@NotNull
+	public AnalyzeExhaust getOrCompute(final long stamp, @NotNull final Callable<AnalyzeExhaust> callable)
+	{
+		while(true)
+		{
+			FutureTask<AnalyzeExhaust> task;
+			boolean owner = false;
+			synchronized(this)
+			{
+				AnalyzeExhaust last = exhaust;
+				if(last != null && exhaustStamp >= stamp)
+					return last;
+
+				if(runningTask != null && runningStamp == stamp)
+				{
+					task = runningTask;
+				}
+				else
+				{
+					task = new FutureTask<AnalyzeExhaust>(new Callable<AnalyzeExhaust>()
+					{
+						@Override
+						public AnalyzeExhaust call() throws Exception
+						{
+							return computeLocked(stamp, callable);
+						}
+					});
+					runningTask = task;
+					runningStamp = stamp;
+					owner = true;
+				}
+			}
+
+			if(owner)
+			{
+				task.run();
+			}
+
+			try
+			{
+				return waitFor(task);
+			}
+			catch(ProcessCanceledException e)
+			{
+				// computation was canceled in other thread, but current thread is not canceled - try again
+				if(owner)
+					throw e;
+				ProgressManager.checkCanceled();
+			}
+			finally
+			{
+				if(owner)
+				{
+					synchronized(this)
+					{
+						if(runningTask == task)
+							runningTask = null;
+					}
+				}
+			}
+		}
+	}
+
+	private AnalyzeExhaust computeLocked(long stamp, Callable<AnalyzeExhaust> callable) throws Exception
+	{
+		lockCancelable(analyzeLock);
+		try
+		{
+			// while we wait for lock, other thread could analyze module for same or newer stamp
+			AnalyzeExhaust last = exhaust;
+			if(last != null && exhaustStamp >= stamp)
+				return last;
+
+			AnalyzeExhaust result = callable.call();
+			synchronized(this)
+			{
+				if(stamp >= exhaustStamp)
+				{
+					exhaust = result;
+					exhaustStamp = stamp;
+				}
+			}
+			return result;
+		}
+		finally
+		{
+			analyzeLock.unlock();
+		}
+	}
+
+	private static void lockCancelable(ReentrantLock lock) throws InterruptedException
+	{
+		while(!lock.tryLock(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+			ProgressManager.checkCanceled();
+	}
+
+	private static AnalyzeExhaust waitFor(FutureTask<AnalyzeExhaust> task)
+	{
+		while(true)
+		{
+			try
+			{
+				return task.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+			}
+			catch(TimeoutException e)
+			{
+				ProgressManager.checkCanceled();
+			}
+			catch(InterruptedException e)
+			{
+				throw new ProcessCanceledException(e);
+			}
+			catch(ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				if(cause instanceof ProcessCanceledException)
+					throw (ProcessCanceledException) cause;
+				if(cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if(cause instanceof Error)
+					throw (Error) cause;
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module.impl;
+
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.psi.NapileFile;
+import com.google.common.collect.Sets;
+
+/**
+ * Collects napile files which was changed after last analyze
+ *
+ * @author VISTALL
+ * @since 10:12/22.04.13
+ */
+public class ChangedFilesTracker
+{
+	public static class ChangedFiles
+	{
+		private final Set<NapileFile> files;
+		private final Set<NapileFile> outOfBlockFiles;
+
+		private ChangedFiles(Set<NapileFile> files, Set<NapileFile> outOfBlockFiles)
+		{
+			this.files = files;
+			this.outOfBlockFiles = outOfBlockFiles;
+		}
+
+		/**
+		 * @return all changed files
+		 */
+		@NotNull
+		public Set<NapileFile> getFiles()
+		{
+			return files;
+		}
+
+		/**
+		 * @return files, where was changed not only method bodies
+		 */
+		@NotNull
+		public Set<NapileFile> getOutOfBlockFiles()
+		{
+			return outOfBlockFiles;
+		}
+
+		public boolean isEmpty()
+		{
+			return files.isEmpty();
+		}
+	}
+
+	private final Set<NapileFile> changedFiles = Sets.newLinkedHashSet();
+	private final Set<NapileFile> outOfBlockFiles = Sets.newHashSet();
+	private boolean structureChanged = true;
+
+	public synchronized void fileChanged(@NotNull NapileFile file, boolean outOfBlock)
+	{
+		changedFiles.add(file);
+		if(outOfBlock)
+			outOfBlockFiles.add(file);
+	}
+
+	/**
+	 * File was added, removed or moved - file set of module is changed, need full analyze
+	 */
+	public synchronized void structureChanged()
+	{
+		structureChanged = true;
+		changedFiles.clear();
+		outOfBlockFiles.clear();
+	}
+
+	/**
+	 * Return drained changes back, if analyze was failed or canceled
+	 *
+	 * @param changedFiles result of {@link #drain()}
+	 */
+	public synchronized void restore(@Nullable ChangedFiles changedFiles)
+	{
+		if(changedFiles == null)
+		{
+			structureChanged();
+			return;
+		}
+
+		if(structureChanged)
+			return;
+
+		this.changedFiles.addAll(changedFiles.getFiles());
+		outOfBlockFiles.addAll(changedFiles.getOutOfBlockFiles());
+	}
+
+	/**
+	 * @return changed files after last call, or null if full analyze is required
+	 */
+	@Nullable
+	public synchronized ChangedFiles drain()
+	{
+		if(structureChanged)
+		{
+			structureChanged = false;
+			changedFiles.clear();
+			outOfBlockFiles.clear();
+			return null;
+		}
+
+		ChangedFiles files = new ChangedFiles(Sets.newLinkedHashSet(changedFiles), Sets.newHashSet(outOfBlockFiles));
+		changedFiles.clear();
+		outOfBlockFiles.clear();
+		return files;
+	}
+}
@@ -16,8 +16,13 @@
 
 package org.napile.idea.plugin.module.impl;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.jetbrains.annotations.NotNull;
 import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.idea.plugin.module.AnalyzeSnapshot;
 import org.napile.idea.plugin.module.ModuleAnalyzer;
 
 /**
@@ -41,4 +46,27 @@ public class DummyModuleAnalyzerImpl extends ModuleAnalyzer
 	{
 		return ModuleAnalyzer.EMPTY;
 	}
+
+	@Override
+	public void scheduleAnalyze(boolean test)
+	{
+	}
+
+	@Override
+	public void publish(boolean test, @NotNull AnalyzeExhaust analyzeExhaust)
+	{
+	}
+
+	@Override
+	public boolean isUpToDate(boolean test)
+	{
+		return true;
+	}
+
+	@NotNull
+	@Override
+	public List<AnalyzeSnapshot.Entry> getSnapshotEntries(boolean test, @NotNull NapileFile file)
+	{
+		return Collections.emptyList();
+	}
 }
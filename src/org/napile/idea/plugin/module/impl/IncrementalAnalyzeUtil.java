@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module.impl;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.psi.NapileFile;
+import com.google.common.collect.Sets;
+
+/**
+ * @author VISTALL
+ * @since 11:20/22.04.13
+ */
+public class IncrementalAnalyzeUtil
+{
+	/**
+	 * Return changed files, which bodies need to be resolved again. If declaration of file was changed(out of block change) or file
+	 * is not valid - declarations can be removed or renamed, and files which referenced old names are not known, that why null is returned
+	 * and full analyze is required. If only method bodies was changed - declarations are same, and other files are not affected
+	 */
+	@Nullable
+	public static Set<NapileFile> collectFilesToReanalyze(@NotNull ChangedFilesTracker.ChangedFiles changedFiles, @NotNull Collection<NapileFile> analyzeFiles)
+	{
+		if(!changedFiles.getOutOfBlockFiles().isEmpty())
+			return null;
+
+		final Set<NapileFile> allFiles = Sets.newHashSet(analyzeFiles);
+		final Set<NapileFile> result = Sets.newLinkedHashSet();
+		for(NapileFile file : changedFiles.getFiles())
+		{
+			if(!file.isValid())
+				return null;
+
+			if(allFiles.contains(file))
+				result.add(file);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.diagnostics.Diagnostic;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.util.slicedmap.ReadOnlySlice;
+import org.napile.compiler.util.slicedmap.WritableSlice;
+import com.google.common.collect.Sets;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+
+/**
+ * Result of incremental analyze. It's always one layer over result of last full analyze: reanalyzed files of previous incremental
+ * analyzes are reanalyzed again, so layers are never chained. Declarations of all files are resolved by new analyze, so data is
+ * taken from new trace first, body data of not reanalyzed files - from last full trace.
+ * Also used for layer analyze of test sources over analyze of production sources, see {@link #layer}
+ *
+ * @author VISTALL
+ * @since 10:31/22.04.13
+ */
+public class IncrementalBindingTrace implements BindingTrace
+{
+	private final BindingTrace current;
+	private final BindingTrace previous;
+	private final Set<NapileFile> reanalyzedFiles;
+	/**
+	 * Analyze of production sources, which test layer is based on, or null if it's not test layer
+	 */
+	private final BindingTrace layerBase;
+
+	private volatile List<Diagnostic> diagnostics;
+
+	/**
+	 * @param previous result of previous analyze - it's replaced by its base, if it's incremental result too
+	 * @param reanalyzedFiles files which bodies are resolved by new analyze, must contain files reanalyzed by previous result, see {@link #getReanalyzedFiles}
+	 */
+	public IncrementalBindingTrace(@NotNull BindingTrace current, @NotNull BindingTrace previous, @NotNull Set<NapileFile> reanalyzedFiles)
+	{
+		this(current, getBase(previous), reanalyzedFiles, getLayerBase(previous));
+	}
+
+	private IncrementalBindingTrace(@NotNull BindingTrace current, @NotNull BindingTrace previous, @NotNull Set<NapileFile> reanalyzedFiles, BindingTrace layerBase)
+	{
+		this.current = current;
+		this.previous = previous;
+		this.reanalyzedFiles = reanalyzedFiles;
+		this.layerBase = layerBase;
+	}
+
+	/**
+	 * Test analyze also resolves declarations of production files again, but only data of test files is taken from it.
+	 * Data of production files is taken only from analyze of production sources, so descriptors of both analyzes are not mixed
+	 */
+	@NotNull
+	public static IncrementalBindingTrace layer(@NotNull BindingTrace current, @NotNull BindingTrace sourceTrace, @NotNull Set<NapileFile> testFiles)
+	{
+		return new IncrementalBindingTrace(current, sourceTrace, testFiles, sourceTrace);
+	}
+
+	/**
+	 * @return trace of production analyze, which test layer is based on
+	 */
+	@Nullable
+	public static BindingTrace getLayerBase(@NotNull BindingTrace bindingTrace)
+	{
+		return bindingTrace instanceof IncrementalBindingTrace ? ((IncrementalBindingTrace) bindingTrace).layerBase : null;
+	}
+
+	/**
+	 * @return files which bodies were resolved after last full analyze (or test layer analyze)
+	 */
+	@NotNull
+	public static Set<NapileFile> getReanalyzedFiles(@NotNull BindingTrace bindingTrace)
+	{
+		return isIncremental(bindingTrace) ? ((IncrementalBindingTrace) bindingTrace).reanalyzedFiles : Collections.<NapileFile>emptySet();
+	}
+
+	/**
+	 * @return result of last full analyze (or test layer analyze), which incremental result is based on
+	 */
+	@NotNull
+	private static BindingTrace getBase(@NotNull BindingTrace bindingTrace)
+	{
+		return isIncremental(bindingTrace) ? ((IncrementalBindingTrace) bindingTrace).previous : bindingTrace;
+	}
+
+	private static boolean isIncremental(@NotNull BindingTrace bindingTrace)
+	{
+		return bindingTrace instanceof IncrementalBindingTrace && ((IncrementalBindingTrace) bindingTrace).previous != ((IncrementalBindingTrace) bindingTrace).layerBase;
+	}
+
+	@NotNull
+	BindingTrace getCurrent()
+	{
+		return current;
+	}
+
+	@NotNull
+	BindingTrace getPrevious()
+	{
+		return previous;
+	}
+
+	/**
+	 * @return true if key is element of reanalyzed file, false if key is element of other file, null if key is not element
+	 */
+	private Boolean isReanalyzed(Object key)
+	{
+		if(!(key instanceof PsiElement))
+			return null;
+
+		PsiElement element = (PsiElement) key;
+		if(!element.isValid())
+			return Boolean.FALSE;
+
+		PsiFile file = element.getContainingFile();
+		return file != null && reanalyzedFiles.contains(file.getOriginalFile());
+	}
+
+	@Override
+	public <K, V> void record(WritableSlice<K, V> slice, K key, V value)
+	{
+		current.record(slice, key, value);
+	}
+
+	@Override
+	public <K> void record(WritableSlice<K, Boolean> slice, K key)
+	{
+		current.record(slice, key);
+	}
+
+	@Override
+	public BindingTrace getParent()
+	{
+		return null;
+	}
+
+	/**
+	 * New analyze resolves declarations of all files, so elements of not reanalyzed files are mapped to same descriptors, which are
+	 * referenced by reanalyzed bodies. Only body data of them, which is not resolved by new analyze, is taken from previous trace.
+	 * In test layer data of not reanalyzed files is taken only from previous analyze
+	 */
+	@Override
+	public <K, V> V get(ReadOnlySlice<K, V> slice, K key)
+	{
+		Boolean reanalyzed = isReanalyzed(key);
+		if(reanalyzed == Boolean.FALSE && layerBase != null)
+			return previous.get(slice, key);
+
+		V value = current.get(slice, key);
+		if(value != null || reanalyzed == Boolean.TRUE)
+			return value;
+		return previous.get(slice, key);
+	}
+
+	@Override
+	public <K, V> V safeGet(ReadOnlySlice<K, V> slice, K key)
+	{
+		V value = get(slice, key);
+		if(value == null)
+			throw new IllegalStateException("No value for slice " + slice + " and key " + key);
+		return value;
+	}
+
+	/**
+	 * Keys which are not elements (descriptors) are taken only from new analyze, previous analyze has other descriptors for same declarations
+	 */
+	@Override
+	public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice)
+	{
+		Set<K> keys = Sets.newLinkedHashSet();
+		for(K key : current.getKeys(slice))
+		{
+			if(layerBase == null || isReanalyzed(key) != Boolean.FALSE)
+				keys.add(key);
+		}
+		for(K key : previous.getKeys(slice))
+		{
+			Boolean reanalyzed = isReanalyzed(key);
+			if(reanalyzed == Boolean.FALSE || reanalyzed == null && layerBase != null)
+				keys.add(key);
+		}
+		return keys;
+	}
+
+	@Override
+	public void report(Diagnostic diagnostic)
+	{
+		current.report(diagnostic);
+		diagnostics = null;
+	}
+
+	@Override
+	public List<Diagnostic> getDiagnostics()
+	{
+		List<Diagnostic> list = diagnostics;
+		if(list == null)
+		{
+			list = new ArrayList<Diagnostic>();
+			for(Diagnostic diagnostic : current.getDiagnostics())
+			{
+				if(reanalyzedFiles.contains(diagnostic.getPsiFile()))
+					list.add(diagnostic);
+			}
+
+			for(Diagnostic diagnostic : previous.getDiagnostics())
+			{
+				if(diagnostic.isValid() && !reanalyzedFiles.contains(diagnostic.getPsiFile()))
+					list.add(diagnostic);
+			}
+			diagnostics = list = Collections.unmodifiableList(list);
+		}
+		return list;
+	}
+}
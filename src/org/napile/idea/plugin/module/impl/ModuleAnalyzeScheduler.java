@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module.impl;
+
+import java.lang.ref.WeakReference;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.idea.plugin.editor.NapileEditorOptions;
+import org.napile.idea.plugin.module.ModuleAnalyzerListener;
+import org.napile.idea.plugin.util.LongRunningReadTask;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.util.Alarm;
+
+/**
+ * Runs module analyze in background after psi changes. Each new change cancel running analyze and restart delay,
+ * result is published to {@link ModuleAnalyzerListener#TOPIC}
+ *
+ * @author VISTALL
+ * @since 16:10/25.04.13
+ */
+public class ModuleAnalyzeScheduler
+{
+	private final Module module;
+	private final ModuleAnalyzerImpl moduleAnalyzer;
+	private final Alarm alarm;
+
+	private volatile ProgressIndicator progressIndicator;
+
+	private volatile boolean sourceRequested;
+	private volatile boolean testRequested;
+
+	// last published results - reused result is not published again, and highlighting is not restarted
+	private volatile WeakReference<AnalyzeExhaust> publishedSource;
+	private volatile WeakReference<AnalyzeExhaust> publishedTest;
+
+	public ModuleAnalyzeScheduler(@NotNull Module module, @NotNull ModuleAnalyzerImpl moduleAnalyzer)
+	{
+		this.module = module;
+		this.moduleAnalyzer = moduleAnalyzer;
+		this.alarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, module);
+	}
+
+	/**
+	 * Request analyze of source or test flavour. Next psi changes will reanalyze it too
+	 */
+	public void request(boolean test)
+	{
+		if(test)
+			testRequested = true;
+		else
+			sourceRequested = true;
+
+		schedule();
+	}
+
+	/**
+	 * Cancel running analyze, and restart delay
+	 */
+	public void schedule()
+	{
+		if(!sourceRequested && !testRequested)
+			return;
+
+		cancel();
+
+		alarm.cancelAllRequests();
+		alarm.addRequest(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				runAnalyze();
+			}
+		}, NapileEditorOptions.getInstance().getAnalyzeDelay());
+	}
+
+	public void cancel()
+	{
+		ProgressIndicator indicator = progressIndicator;
+		if(indicator != null)
+			indicator.cancel();
+	}
+
+	private void runAnalyze()
+	{
+		if(module.isDisposed())
+			return;
+
+		// while indexing analyze is not possible, ProjectAnalyzeCoordinator will analyze all modules after it
+		if(DumbService.getInstance(module.getProject()).isDumb())
+			return;
+
+		final ProgressIndicator indicator = new ProgressIndicatorBase();
+		progressIndicator = indicator;
+		try
+		{
+			LongRunningReadTask.runWithWriteActionPriority(indicator, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if(module.isDisposed())
+						return;
+
+					if(sourceRequested)
+						publish(false, moduleAnalyzer.getSourceAnalyze(true));
+
+					if(testRequested)
+						publish(true, moduleAnalyzer.getTestSourceAnalyze(true));
+				}
+			});
+		}
+		catch(ProcessCanceledException e)
+		{
+			// canceled by write action or new change - if it was not psi change, nobody will reschedule it
+			if(progressIndicator == indicator)
+				schedule();
+		}
+		finally
+		{
+			if(progressIndicator == indicator)
+				progressIndicator = null;
+		}
+	}
+
+	/**
+	 * Result can be published by this scheduler and by project warm-up at same time, it is published only once
+	 */
+	void publish(boolean test, AnalyzeExhaust analyzeExhaust)
+	{
+		if(analyzeExhaust == ModuleAnalyzerImpl.EMPTY_ANALYZER_EXHAUST || !markPublished(test, analyzeExhaust))
+			return;
+
+		module.getProject().getMessageBus().syncPublisher(ModuleAnalyzerListener.TOPIC).moduleAnalyzed(module, test, analyzeExhaust);
+	}
+
+	private synchronized boolean markPublished(boolean test, AnalyzeExhaust analyzeExhaust)
+	{
+		WeakReference<AnalyzeExhaust> published = test ? publishedTest : publishedSource;
+		if(published != null && published.get() == analyzeExhaust)
+			return false;
+
+		if(test)
+			publishedTest = new WeakReference<AnalyzeExhaust>(analyzeExhaust);
+		else
+			publishedSource = new WeakReference<AnalyzeExhaust>(analyzeExhaust);
+		return true;
+	}
+}
@@ -16,17 +16,51 @@
 
 package org.napile.idea.plugin.module.impl;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
 import org.jetbrains.annotations.NotNull;
+import org.napile.asm.resolve.name.Name;
+import org.napile.compiler.analyzer.AnalyzeContext;
 import org.napile.compiler.analyzer.AnalyzeExhaust;
 import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.di.InjectorForTopDownAnalyzerBasic;
+import org.napile.compiler.lang.descriptors.ModuleDescriptor;
 import org.napile.compiler.lang.psi.NapileFile;
 import org.napile.compiler.lang.resolve.BindingTrace;
 import org.napile.compiler.lang.resolve.BodiesResolveContext;
+import org.napile.compiler.lang.resolve.CachedBodiesResolveContext;
+import org.napile.compiler.lang.resolve.ObservableBindingTrace;
+import org.napile.compiler.lang.resolve.TopDownAnalysisParameters;
+import org.napile.idea.plugin.editor.NapileEditorOptions;
+import org.napile.idea.plugin.module.AnalyzeSnapshot;
 import org.napile.idea.plugin.module.ModuleAnalyzer;
 import org.napile.idea.plugin.module.ModuleCollector;
+import org.napile.idea.plugin.module.statistics.AnalyzeRecord;
+import org.napile.idea.plugin.module.statistics.AnalyzeStatistics;
+import org.napile.idea.plugin.psi.impl.NapileModificationTracker;
+import org.napile.idea.plugin.util.LongRunningReadTask;
+import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerAdapter;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
 import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.Alarm;
 
 /**
  * @author VISTALL
@@ -34,50 +68,424 @@ import com.intellij.openapi.project.DumbService;
  */
 public class ModuleAnalyzerImpl extends ModuleAnalyzer
 {
-	private static AnalyzeExhaust EMPTY_ANALYZER_EXHAUST = AnalyzeExhaust.success(BindingTrace.EMPTY, BodiesResolveContext.EMPTY, null);
+	static final AnalyzeExhaust EMPTY_ANALYZER_EXHAUST = AnalyzeExhaust.success(BindingTrace.EMPTY, BodiesResolveContext.EMPTY, null);
+
+	/**
+	 * If part of files to reanalyze (with files reanalyzed after last full analyze) is bigger - do full analyze
+	 */
+	private static final float MAX_INCREMENTAL_RATIO = 0.3f;
+	/**
+	 * Delay of snapshot saving after analyze - while user is typing, only last result is saved
+	 */
+	private static final int SNAPSHOT_SAVE_DELAY = 10000;
 
-	private volatile AnalyzeExhaust srcAnalyzeExhaust;
-	private volatile AnalyzeExhaust testAnalyzeExhaust;
+	private final AnalyzeExhaustHolder srcHolder = new AnalyzeExhaustHolder(false);
+	private final AnalyzeExhaustHolder testHolder = new AnalyzeExhaustHolder(true);
 
 	private final Module module;
+	private final ModuleAnalyzeScheduler scheduler;
+	private final Alarm snapshotAlarm;
 
 	public ModuleAnalyzerImpl(Module module)
 	{
 		this.module = module;
+		this.scheduler = new ModuleAnalyzeScheduler(module, this);
+		this.snapshotAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, module);
+
+		PsiManager.getInstance(module.getProject()).addPsiTreeChangeListener(new ModuleTreeChangeListener(module, scheduler, srcHolder.getChangedFiles(), testHolder.getChangedFiles()), module);
+
+		module.getProject().getMessageBus().connect(module).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new FileEditorManagerAdapter()
+		{
+			@Override
+			public void fileOpened(FileEditorManager source, VirtualFile file)
+			{
+				retainOpenFiles(source);
+			}
+
+			@Override
+			public void fileClosed(FileEditorManager source, VirtualFile file)
+			{
+				retainOpenFiles(source);
+			}
+		});
+
+		module.getProject().getMessageBus().connect(module).subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener()
+		{
+			@Override
+			public void enteredDumbMode()
+			{
+			}
+
+			@Override
+			public void exitDumbMode()
+			{
+				// requests which was skipped while indexing
+				scheduler.schedule();
+			}
+		});
 	}
 
 	@NotNull
 	@Override
 	public AnalyzeExhaust getSourceAnalyze(boolean updateIfNeed)
 	{
-		srcAnalyzeExhaust = getOrUpdate(false, updateIfNeed, srcAnalyzeExhaust);
-		return srcAnalyzeExhaust;
+		return getOrUpdate(srcHolder, updateIfNeed);
 	}
 
 	@NotNull
 	@Override
 	public AnalyzeExhaust getTestSourceAnalyze(boolean updateIfNeed)
 	{
-		testAnalyzeExhaust = getOrUpdate(true, updateIfNeed, testAnalyzeExhaust);
-		return testAnalyzeExhaust;
+		return getOrUpdate(testHolder, updateIfNeed);
+	}
+
+	@Override
+	public void scheduleAnalyze(boolean test)
+	{
+		scheduler.request(test);
+	}
+
+	@Override
+	public void publish(boolean test, @NotNull AnalyzeExhaust analyzeExhaust)
+	{
+		scheduler.publish(test, analyzeExhaust);
 	}
 
-	private static int callCount;
+	@Override
+	public boolean isUpToDate(boolean test)
+	{
+		AnalyzeExhaustHolder holder = test ? testHolder : srcHolder;
+		return holder.getExhaust() != null && holder.getExhaustStamp() == NapileModificationTracker.getInstance(module.getProject()).getModificationCount();
+	}
 
-	private AnalyzeExhaust getOrUpdate(boolean test, boolean needUpdate, AnalyzeExhaust old)
+	@NotNull
+	@Override
+	public List<AnalyzeSnapshot.Entry> getSnapshotEntries(boolean test, @NotNull NapileFile file)
 	{
-		if(DumbService.getInstance(module.getProject()).isDumb() || old == null)
+		AnalyzeExhaustHolder holder = test ? testHolder : srcHolder;
+		if(holder.getExhaust() != null)
 		{
-			return EMPTY_ANALYZER_EXHAUST;
+			holder.setSnapshot(null);
+			return Collections.emptyList();
+		}
+
+		AnalyzeSnapshot snapshot = holder.getSnapshot();
+		if(snapshot == null)
+		{
+			snapshot = AnalyzeSnapshot.load(getSnapshotFile(test));
+			holder.setSnapshot(snapshot);
+		}
+		return snapshot.getEntries(file);
+	}
+
+	private void retainOpenFiles(@NotNull FileEditorManager fileEditorManager)
+	{
+		List<VirtualFile> openFiles = Arrays.asList(fileEditorManager.getOpenFiles());
+		for(AnalyzeExhaustHolder holder : new AnalyzeExhaustHolder[] {srcHolder, testHolder})
+		{
+			AnalyzeExhaust exhaust = holder.getExhaust();
+			if(exhaust != null)
+			{
+				PartitionedBindingTrace.retainOpenFiles(exhaust.getBindingTrace(), openFiles);
+			}
+		}
+	}
+
+	private AnalyzeExhaust getOrUpdate(final AnalyzeExhaustHolder holder, boolean needUpdate)
+	{
+		final Project project = module.getProject();
+		if(DumbService.getInstance(project).isDumb())
+		{
+			AnalyzeExhaust old = holder.getExhaust();
+			if(needUpdate)
+			{
+				scheduler.request(holder.isTest());
+			}
+			return old == null || !NapileEditorOptions.getInstance().isStaleAnalyzeInDumbMode() ? EMPTY_ANALYZER_EXHAUST : old;
 		}
 
 		if(needUpdate)
 		{
-			return AnalyzerFacade.analyzeFiles(module.getProject(), ModuleCollector.getAnalyzeContext(module.getProject(), null, test, module), Predicates.<NapileFile>alwaysTrue());
+			// changes of other languages can not change analyze of module
+			final long stamp = NapileModificationTracker.getInstance(project).getModificationCount();
+
+			return holder.getOrCompute(stamp, new Callable<AnalyzeExhaust>()
+			{
+				@Override
+				public AnalyzeExhaust call() throws Exception
+				{
+					return analyze(holder);
+				}
+			});
 		}
 		else
 		{
+			AnalyzeExhaust old = holder.getExhaust();
+			return old == null ? EMPTY_ANALYZER_EXHAUST : old;
+		}
+	}
+
+	@NotNull
+	private AnalyzeExhaust analyze(@NotNull AnalyzeExhaustHolder holder)
+	{
+		final AnalyzeStatistics statistics = AnalyzeStatistics.getInstance(module.getProject());
+		final AnalyzeRecord record = new AnalyzeRecord(module.getName(), holder.isTest());
+		AnalyzeExhaust result = null;
+
+		final ChangedFilesTracker.ChangedFiles changedFiles = holder.getChangedFiles().drain();
+		try
+		{
+			final AnalyzeExhaust old = holder.getExhaust();
+			result = analyze(holder, old, changedFiles, record);
+			if(result != old && !result.isError())
+				scheduleSaveSnapshots();
+
+			record.startPhase("retain open files");
+			PartitionedBindingTrace.retainOpenFiles(result.getBindingTrace(), Arrays.asList(FileEditorManager.getInstance(module.getProject()).getOpenFiles()));
+			return result;
+		}
+		catch(RuntimeException e)
+		{
+			holder.getChangedFiles().restore(changedFiles);
+			throw e;
+		}
+		catch(Error e)
+		{
+			holder.getChangedFiles().restore(changedFiles);
+			throw e;
+		}
+		finally
+		{
+			record.finish(result, statistics.isDetailed());
+			statistics.add(record);
+		}
+	}
+
+	@NotNull
+	private AnalyzeExhaust analyze(@NotNull AnalyzeExhaustHolder holder, AnalyzeExhaust old, ChangedFilesTracker.ChangedFiles changedFiles, @NotNull AnalyzeRecord record)
+	{
+		final Project project = module.getProject();
+		final boolean test = holder.isTest();
+
+		record.startPhase("collect files");
+		final AnalyzeContext analyzeContext = ModuleCollector.getAnalyzeContext(project, null, test, module);
+		record.setFileCount(analyzeContext.getFiles().size());
+
+		// bodies of exported module sources are resolved by analyze of that modules
+		final Predicate<NapileFile> ownFiles = new ModuleFilePredicate(module);
+		record.setResolvedFileCount(Collections2.filter(analyzeContext.getFiles(), ownFiles).size());
+		if(test)
+		{
+			record.startPhase("source analyze");
+			final AnalyzeExhaust sourceExhaust = getSourceAnalyze(true);
+			if(sourceExhaust != EMPTY_ANALYZER_EXHAUST && !sourceExhaust.isError())
+			{
+				return analyzeTestsOverSources(holder, analyzeContext, sourceExhaust, old, changedFiles, record);
+			}
+		}
+
+		if(old == null || old == EMPTY_ANALYZER_EXHAUST || old.isError() || changedFiles == null)
+		{
+			return analyzeFiles(holder, analyzeContext, ownFiles, record);
+		}
+
+		if(changedFiles.isEmpty())
+		{
+			record.setKind(AnalyzeRecord.Kind.REUSED);
+			record.setResolvedFileCount(0);
 			return old;
 		}
+
+		record.startPhase("collect changed files");
+		final Set<NapileFile> filesToReanalyze = IncrementalAnalyzeUtil.collectFilesToReanalyze(changedFiles, analyzeContext.getFiles());
+		if(filesToReanalyze == null)
+		{
+			return analyzeFiles(holder, analyzeContext, ownFiles, record);
+		}
+
+		if(filesToReanalyze.isEmpty())
+		{
+			record.setKind(AnalyzeRecord.Kind.REUSED);
+			record.setResolvedFileCount(0);
+			return old;
+		}
+
+		final Set<NapileFile> reanalyzedFiles = collectReanalyzedFiles(old, filesToReanalyze, analyzeContext);
+		if(reanalyzedFiles.size() > analyzeContext.getFiles().size() * MAX_INCREMENTAL_RATIO)
+		{
+			return analyzeFiles(holder, analyzeContext, ownFiles, record);
+		}
+
+		record.setKind(AnalyzeRecord.Kind.INCREMENTAL);
+		record.setResolvedFileCount(reanalyzedFiles.size());
+
+		// declarations of all files are resolved again, bodies - only for files changed after last full analyze. Body data of other
+		// files is taken from last full analyze, see IncrementalBindingTrace
+		final AnalyzeExhaust exhaust = analyzeFiles(holder, analyzeContext, Predicates.and(ownFiles, Predicates.in(reanalyzedFiles)), record);
+		if(exhaust.isError())
+		{
+			return exhaust;
+		}
+
+		BindingTrace bindingTrace = new IncrementalBindingTrace(exhaust.getBindingTrace(), old.getBindingTrace(), reanalyzedFiles);
+		return AnalyzeExhaust.success(bindingTrace, exhaust.getBodiesResolveContext(), exhaust.getInjector());
+	}
+
+	/**
+	 * Incremental result is always based on last full analyze, so files which were reanalyzed by previous incremental analyzes
+	 * are reanalyzed again
+	 */
+	@NotNull
+	private static Set<NapileFile> collectReanalyzedFiles(@NotNull AnalyzeExhaust old, @NotNull Set<NapileFile> changedFiles, @NotNull AnalyzeContext analyzeContext)
+	{
+		final Set<NapileFile> reanalyzedFiles = Sets.newHashSet(changedFiles);
+		for(NapileFile file : IncrementalBindingTrace.getReanalyzedFiles(old.getBindingTrace()))
+		{
+			if(analyzeContext.getFiles().contains(file))
+				reanalyzedFiles.add(file);
+		}
+		return reanalyzedFiles;
+	}
+
+	/**
+	 * Same as {@link AnalyzerFacade#analyzeFiles}, but body level data is stored in {@link PartitionedBindingTrace}.
+	 * If partition of file is collected - file is marked as changed, and module is analyzed again
+	 */
+	@NotNull
+	private AnalyzeExhaust analyzeFiles(@NotNull final AnalyzeExhaustHolder holder, @NotNull AnalyzeContext analyzeContext, @NotNull Predicate<NapileFile> analyzeCompletely, @NotNull AnalyzeRecord record)
+	{
+		record.startPhase("top down analyze");
+
+		final BindingTrace bindingTrace = new PartitionedBindingTrace(new PartitionedBindingTrace.EvictionListener()
+		{
+			@Override
+			public void partitionEvicted(@NotNull NapileFile file)
+			{
+				holder.getChangedFiles().fileChanged(file, false);
+				holder.markOutdated();
+				scheduler.request(holder.isTest());
+			}
+		});
+
+		final ModuleDescriptor moduleDescriptor = new ModuleDescriptor(Name.special("<module>"));
+		final TopDownAnalysisParameters parameters = new TopDownAnalysisParameters(analyzeCompletely, false);
+
+		final InjectorForTopDownAnalyzerBasic injector = new InjectorForTopDownAnalyzerBasic(module.getProject(), parameters, new ObservableBindingTrace(bindingTrace), moduleDescriptor);
+		try
+		{
+			injector.getTopDownAnalyzer().analyzeFiles(module.getProject(), analyzeContext);
+
+			return AnalyzeExhaust.success(bindingTrace, new CachedBodiesResolveContext(injector.getTopDownAnalysisContext()), injector);
+		}
+		finally
+		{
+			injector.destroy();
+			record.finishPhase();
+		}
+	}
+
+	@NotNull
+	private File getSnapshotFile(boolean test)
+	{
+		File projectDir = new File(new File(PathManager.getSystemPath(), "napile-analyze-snapshot"), module.getProject().getLocationHash());
+		return new File(projectDir, FileUtil.sanitizeFileName(module.getName()) + (test ? "-test" : "") + ".dat");
+	}
+
+	private void scheduleSaveSnapshots()
+	{
+		if(snapshotAlarm.isDisposed())
+			return;
+
+		snapshotAlarm.cancelAllRequests();
+		snapshotAlarm.addRequest(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				saveSnapshot(srcHolder);
+				saveSnapshot(testHolder);
+			}
+		}, SNAPSHOT_SAVE_DELAY);
+	}
+
+	/**
+	 * Snapshot is saved in background thread after analyze. If write action is started - saving is canceled and scheduled again
+	 */
+	private void saveSnapshot(@NotNull final AnalyzeExhaustHolder holder)
+	{
+		final AnalyzeExhaust exhaust = holder.getExhaust();
+		if(exhaust == null || exhaust.isError() || module.isDisposed())
+		{
+			return;
+		}
+
+		try
+		{
+			LongRunningReadTask.runWithWriteActionPriority(new ProgressIndicatorBase(), new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if(!module.isDisposed())
+						AnalyzeSnapshot.save(getSnapshotFile(holder.isTest()), exhaust);
+				}
+			});
+		}
+		catch(ProcessCanceledException e)
+		{
+			scheduleSaveSnapshots();
+		}
+	}
+
+	/**
+	 * Resolve only bodies of test files, all other data is taken from analyze of production sources. If production analyze is same,
+	 * which previous test analyze is based on - only changed test files are resolved
+	 */
+	@NotNull
+	private AnalyzeExhaust analyzeTestsOverSources(@NotNull AnalyzeExhaustHolder holder, @NotNull AnalyzeContext analyzeContext, @NotNull AnalyzeExhaust sourceExhaust, AnalyzeExhaust old, ChangedFilesTracker.ChangedFiles changedFiles, @NotNull AnalyzeRecord record)
+	{
+		final Predicate<NapileFile> testFiles = new ModuleFilePredicate(module, true);
+
+		if(old != null && old != EMPTY_ANALYZER_EXHAUST && !old.isError() && changedFiles != null && IncrementalBindingTrace.getLayerBase(old.getBindingTrace()) == sourceExhaust.getBindingTrace())
+		{
+			record.startPhase("collect changed files");
+			final Set<NapileFile> changedTestFiles = IncrementalAnalyzeUtil.collectFilesToReanalyze(changedFiles, Collections2.filter(analyzeContext.getFiles(), testFiles));
+			if(changedTestFiles != null && changedTestFiles.isEmpty())
+			{
+				record.setKind(AnalyzeRecord.Kind.REUSED);
+				record.setResolvedFileCount(0);
+				return old;
+			}
+
+			final Set<NapileFile> reanalyzedFiles = changedTestFiles == null ? null : collectReanalyzedFiles(old, changedTestFiles, analyzeContext);
+			if(reanalyzedFiles != null && reanalyzedFiles.size() <= Collections2.filter(analyzeContext.getFiles(), testFiles).size() * MAX_INCREMENTAL_RATIO)
+			{
+				record.setKind(AnalyzeRecord.Kind.INCREMENTAL);
+				record.setResolvedFileCount(reanalyzedFiles.size());
+
+				final AnalyzeExhaust exhaust = analyzeFiles(holder, analyzeContext, Predicates.and(testFiles, Predicates.in(reanalyzedFiles)), record);
+				if(exhaust.isError())
+				{
+					return exhaust;
+				}
+
+				BindingTrace bindingTrace = new IncrementalBindingTrace(exhaust.getBindingTrace(), old.getBindingTrace(), reanalyzedFiles);
+				return AnalyzeExhaust.success(bindingTrace, exhaust.getBodiesResolveContext(), exhaust.getInjector());
+			}
+		}
+
+		record.setKind(AnalyzeRecord.Kind.TEST_LAYER);
+
+		final AnalyzeExhaust exhaust = analyzeFiles(holder, analyzeContext, testFiles, record);
+		if(exhaust.isError())
+		{
+			return exhaust;
+		}
+
+		final Set<NapileFile> resolvedFiles = Sets.newHashSet(Collections2.filter(analyzeContext.getFiles(), testFiles));
+		record.setResolvedFileCount(resolvedFiles.size());
+
+		BindingTrace bindingTrace = IncrementalBindingTrace.layer(exhaust.getBindingTrace(), sourceExhaust.getBindingTrace(), resolvedFiles);
+		return AnalyzeExhaust.success(bindingTrace, exhaust.getBodiesResolveContext(), exhaust.getInjector());
 	}
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module.impl;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.lang.psi.NapileFile;
+import com.google.common.base.Predicate;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+
+/**
+ * Accepts only files of module. Files of dependency modules and sdk are resolved only on declaration level - bodies and
+ * diagnostics of them are provided by analyze of own module. If testOnly is set - accepts only files from test roots of module
+ *
+ * @author VISTALL
+ * @since 13:48/27.04.13
+ */
+public class ModuleFilePredicate implements Predicate<NapileFile>
+{
+	private final Module module;
+	private final boolean testOnly;
+
+	public ModuleFilePredicate(@NotNull Module module)
+	{
+		this(module, false);
+	}
+
+	public ModuleFilePredicate(@NotNull Module module, boolean testOnly)
+	{
+		this.module = module;
+		this.testOnly = testOnly;
+	}
+
+	@Override
+	public boolean apply(NapileFile file)
+	{
+		if(ModuleUtilCore.findModuleForPsiElement(file) != module)
+			return false;
+
+		if(!testOnly)
+			return true;
+
+		VirtualFile virtualFile = file.getOriginalFile().getVirtualFile();
+		return virtualFile != null && ModuleRootManager.getInstance(module).getFileIndex().isInTestSourceContent(virtualFile);
+	}
+}
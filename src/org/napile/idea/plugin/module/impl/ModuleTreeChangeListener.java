@@ -0,0 +1,149 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module.impl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.idea.plugin.psi.impl.NapileCodeBlockModificationListener;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileSystemItem;
+import com.intellij.psi.PsiTreeChangeAdapter;
+import com.intellij.psi.PsiTreeChangeEvent;
+import com.intellij.util.ArrayUtil;
+
+/**
+ * Feeds {@link ChangedFilesTracker}s of module from psi events, and schedule background analyze
+ *
+ * @author VISTALL
+ * @since 10:54/22.04.13
+ */
+public class ModuleTreeChangeListener extends PsiTreeChangeAdapter
+{
+	private final Module module;
+	private final ModuleAnalyzeScheduler scheduler;
+	private final ChangedFilesTracker[] trackers;
+
+	public ModuleTreeChangeListener(@NotNull Module module, @NotNull ModuleAnalyzeScheduler scheduler, @NotNull ChangedFilesTracker... trackers)
+	{
+		this.module = module;
+		this.scheduler = scheduler;
+		this.trackers = trackers;
+	}
+
+	@Override
+	public void childAdded(@NotNull PsiTreeChangeEvent event)
+	{
+		processEvent(event);
+	}
+
+	@Override
+	public void childRemoved(@NotNull PsiTreeChangeEvent event)
+	{
+		processEvent(event);
+	}
+
+	@Override
+	public void childReplaced(@NotNull PsiTreeChangeEvent event)
+	{
+		processEvent(event);
+	}
+
+	@Override
+	public void childMoved(@NotNull PsiTreeChangeEvent event)
+	{
+		processEvent(event);
+	}
+
+	@Override
+	public void childrenChanged(@NotNull PsiTreeChangeEvent event)
+	{
+		processEvent(event);
+	}
+
+	@Override
+	public void propertyChanged(@NotNull PsiTreeChangeEvent event)
+	{
+		processEvent(event);
+	}
+
+	private void processEvent(PsiTreeChangeEvent event)
+	{
+		final PsiFile file = event.getFile();
+		if(file == null)
+		{
+			// file or directory level event: add, remove, move or rename
+			PsiElement element = event.getChild();
+			if(element == null)
+				element = event.getElement();
+			if(!(element instanceof NapileFile || element instanceof PsiDirectory))
+				return;
+
+			// new directory is empty, files added to it are reported by own events
+			if(element instanceof PsiDirectory && element.isValid() && event.getOldParent() == null && ((PsiDirectory) element).getChildren().length == 0)
+				return;
+
+			// removed element is invalid, so its old place is checked by parent
+			if(isInVisibleSources(element) || isInVisibleSources(event.getParent()) || isInVisibleSources(event.getOldParent()) || isInVisibleSources(event.getNewParent()))
+			{
+				for(ChangedFilesTracker tracker : trackers)
+					tracker.structureChanged();
+				scheduler.schedule();
+			}
+			return;
+		}
+
+		if(!(file instanceof NapileFile) || !isVisibleFromModule(ModuleUtilCore.findModuleForPsiElement(file)))
+			return;
+
+		PsiElement parent = event.getParent();
+		boolean outOfBlock = !NapileCodeBlockModificationListener.isInsideCodeBlock(parent == null ? event.getElement() : parent);
+
+		for(ChangedFilesTracker tracker : trackers)
+			tracker.fileChanged((NapileFile) file.getOriginalFile(), outOfBlock);
+		scheduler.schedule();
+	}
+
+	/**
+	 * @return true if element is file or directory in sources of this module or its dependencies
+	 */
+	private boolean isInVisibleSources(@Nullable PsiElement element)
+	{
+		if(!(element instanceof PsiFileSystemItem) || !element.isValid())
+			return false;
+
+		VirtualFile virtualFile = ((PsiFileSystemItem) element).getVirtualFile();
+		if(virtualFile == null)
+			return false;
+
+		Module fileModule = ModuleUtilCore.findModuleForFile(virtualFile, module.getProject());
+		return isVisibleFromModule(fileModule) && ModuleRootManager.getInstance(fileModule).getFileIndex().isInSourceContent(virtualFile);
+	}
+
+	private boolean isVisibleFromModule(@Nullable Module fileModule)
+	{
+		if(fileModule == null)
+			return false;
+		return fileModule == module || ArrayUtil.contains(fileModule, ModuleRootManager.getInstance(module).getDependencies());
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module.impl;
+
+import java.lang.ref.SoftReference;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.diagnostics.Diagnostic;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceImpl;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.util.slicedmap.MutableSlicedMap;
+import org.napile.compiler.util.slicedmap.ReadOnlySlice;
+import org.napile.compiler.util.slicedmap.SlicedMapImpl;
+import org.napile.compiler.util.slicedmap.WritableSlice;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+
+/**
+ * Binding trace which stores body level slices of each file in separate partition. Partitions of files which are not
+ * opened in editor are softly reachable - if partition is collected, listener is notified, and file need to be analyzed again.
+ * All other data (declarations, diagnostics) are stored in resident trace
+ * <p/>
+ * Body slices of evicted partition are not recomputed by this trace - {@link #get} return null for them, like for not resolved element.
+ * Callers which need body data of not opened files must use {@link org.napile.idea.plugin.module.ModuleAnalyzerUtil#getBodyData},
+ * which analyze module again if data was evicted
+ *
+ * @author VISTALL
+ * @since 14:02/30.04.13
+ */
+public class PartitionedBindingTrace implements BindingTrace
+{
+	public interface EvictionListener
+	{
+		void partitionEvicted(@NotNull NapileFile file);
+	}
+
+	private static final Set<ReadOnlySlice<?, ?>> BODY_SLICES = ImmutableSet.<ReadOnlySlice<?, ?>>of(BindingTraceKeys.EXPRESSION_TYPE, BindingTraceKeys.RESOLVED_CALL, BindingTraceKeys.RESOLUTION_SCOPE);
+
+	private static class Partition
+	{
+		private final AtomicBoolean evictionReported = new AtomicBoolean();
+
+		private volatile MutableSlicedMap strongMap;
+		private volatile SoftReference<MutableSlicedMap> softMap;
+
+		private Partition()
+		{
+			strongMap = SlicedMapImpl.create();
+		}
+
+		@Nullable
+		private MutableSlicedMap get()
+		{
+			MutableSlicedMap value = strongMap;
+			if(value != null)
+				return value;
+
+			SoftReference<MutableSlicedMap> reference = softMap;
+			return reference == null ? null : reference.get();
+		}
+
+		private void setStrong(boolean strong)
+		{
+			MutableSlicedMap value = get();
+			if(strong)
+			{
+				strongMap = value;
+			}
+			else if(value != null)
+			{
+				softMap = new SoftReference<MutableSlicedMap>(value);
+				strongMap = null;
+			}
+		}
+	}
+
+	private final BindingTrace resident = new BindingTraceImpl();
+	private final Map<PsiFile, Partition> partitions = new ConcurrentHashMap<PsiFile, Partition>();
+	private final EvictionListener evictionListener;
+
+	public PartitionedBindingTrace(@NotNull EvictionListener evictionListener)
+	{
+		this.evictionListener = evictionListener;
+	}
+
+	/**
+	 * Partitions of open files are hold strongly, partitions of other files - softly. Layers of {@link IncrementalBindingTrace} are updated too
+	 */
+	public static void retainOpenFiles(@NotNull BindingTrace bindingTrace, @NotNull Collection<VirtualFile> openFiles)
+	{
+		if(bindingTrace instanceof PartitionedBindingTrace)
+		{
+			for(Map.Entry<PsiFile, Partition> entry : ((PartitionedBindingTrace) bindingTrace).partitions.entrySet())
+			{
+				VirtualFile virtualFile = entry.getKey().getVirtualFile();
+				entry.getValue().setStrong(virtualFile != null && openFiles.contains(virtualFile));
+			}
+		}
+		else if(bindingTrace instanceof IncrementalBindingTrace)
+		{
+			retainOpenFiles(((IncrementalBindingTrace) bindingTrace).getCurrent(), openFiles);
+			retainOpenFiles(((IncrementalBindingTrace) bindingTrace).getPrevious(), openFiles);
+		}
+	}
+
+	/**
+	 * @return true if body data of element file was stored in trace, and it's collected
+	 */
+	public static boolean isEvicted(@NotNull BindingTrace bindingTrace, @NotNull PsiElement element)
+	{
+		if(bindingTrace instanceof PartitionedBindingTrace)
+		{
+			Partition partition = ((PartitionedBindingTrace) bindingTrace).partitions.get(element.getContainingFile());
+			return partition != null && partition.get() == null;
+		}
+		else if(bindingTrace instanceof IncrementalBindingTrace)
+		{
+			return isEvicted(((IncrementalBindingTrace) bindingTrace).getCurrent(), element) || isEvicted(((IncrementalBindingTrace) bindingTrace).getPrevious(), element);
+		}
+		return false;
+	}
+
+	@Nullable
+	private static PsiFile getPartitionFile(ReadOnlySlice<?, ?> slice, Object key)
+	{
+		if(!BODY_SLICES.contains(slice) || !(key instanceof PsiElement))
+			return null;
+
+		PsiFile file = ((PsiElement) key).getContainingFile();
+		return file instanceof NapileFile ? file : null;
+	}
+
+	@Nullable
+	private MutableSlicedMap getPartitionMap(@NotNull PsiFile file)
+	{
+		Partition partition = partitions.get(file);
+		if(partition == null)
+			return null;
+
+		MutableSlicedMap map = partition.get();
+		if(map == null && partition.evictionReported.compareAndSet(false, true))
+			evictionListener.partitionEvicted((NapileFile) file);
+		return map;
+	}
+
+	@Override
+	public <K, V> void record(WritableSlice<K, V> slice, K key, V value)
+	{
+		PsiFile file = getPartitionFile(slice, key);
+		if(file == null)
+		{
+			resident.record(slice, key, value);
+			return;
+		}
+
+		Partition partition = partitions.get(file);
+		if(partition == null)
+		{
+			partition = new Partition();
+			partitions.put(file, partition);
+		}
+
+		MutableSlicedMap map = partition.get();
+		if(map != null)
+			map.put(slice, key, value);
+	}
+
+	@Override
+	public <K> void record(WritableSlice<K, Boolean> slice, K key)
+	{
+		record(slice, key, Boolean.TRUE);
+	}
+
+	@Override
+	public BindingTrace getParent()
+	{
+		return null;
+	}
+
+	/**
+	 * Return null for body slices of evicted partition, listener is notified about eviction only once
+	 */
+	@Override
+	public <K, V> V get(ReadOnlySlice<K, V> slice, K key)
+	{
+		PsiFile file = getPartitionFile(slice, key);
+		if(file == null)
+			return resident.get(slice, key);
+
+		MutableSlicedMap map = getPartitionMap(file);
+		return map == null ? null : map.get(slice, key);
+	}
+
+	@Override
+	public <K, V> V safeGet(ReadOnlySlice<K, V> slice, K key)
+	{
+		PsiFile file = getPartitionFile(slice, key);
+		if(file == null)
+			return resident.safeGet(slice, key);
+
+		MutableSlicedMap map = getPartitionMap(file);
+		if(map == null && partitions.containsKey(file))
+			throw new IllegalStateException("Body data of " + file.getName() + " is evicted, it must be read by ModuleAnalyzerUtil.getBodyData()");
+		V value = map == null ? null : map.get(slice, key);
+		if(value == null)
+			throw new IllegalStateException("No value for slice " + slice + " and key " + key);
+		return value;
+	}
+
+	@Override
+	public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice)
+	{
+		if(!BODY_SLICES.contains(slice))
+			return resident.getKeys(slice);
+
+		// evicted partitions are skipped silently - keys are collected by statistics, which must not start analyze
+		Set<K> keys = Sets.newLinkedHashSet(resident.getKeys(slice));
+		for(Partition partition : partitions.values())
+		{
+			MutableSlicedMap map = partition.get();
+			if(map != null)
+				keys.addAll(map.getKeys(slice));
+		}
+		return keys;
+	}
+
+	@Override
+	public void report(Diagnostic diagnostic)
+	{
+		resident.report(diagnostic);
+	}
+
+	@Override
+	public List<Diagnostic> getDiagnostics()
+	{
+		return resident.getDiagnostics();
+	}
+}
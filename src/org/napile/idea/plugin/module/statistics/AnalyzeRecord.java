@@ -0,0 +1,282 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module.statistics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.util.slicedmap.WritableSlice;
+import com.intellij.openapi.util.text.StringUtil;
+
+/**
+ * Metrics of one module analyze: phases with wall and cpu time, size of result, and how analyze is finished
+ *
+ * @author VISTALL
+ * @since 16:40/30.04.13
+ */
+public class AnalyzeRecord
+{
+	public static enum Kind
+	{
+		FULL,
+		INCREMENTAL,
+		TEST_LAYER,
+		REUSED
+	}
+
+	public static class Phase
+	{
+		private final long wallNanos;
+		private final long cpuNanos;
+
+		private Phase(long wallNanos, long cpuNanos)
+		{
+			this.wallNanos = wallNanos;
+			this.cpuNanos = cpuNanos;
+		}
+
+		public long getWallNanos()
+		{
+			return wallNanos;
+		}
+
+		public long getCpuNanos()
+		{
+			return cpuNanos;
+		}
+	}
+
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+	private static final Map<String, WritableSlice<?, ?>> SLICES = new LinkedHashMap<String, WritableSlice<?, ?>>();
+
+	static
+	{
+		SLICES.put("EXPRESSION_TYPE", BindingTraceKeys.EXPRESSION_TYPE);
+		SLICES.put("RESOLVED_CALL", BindingTraceKeys.RESOLVED_CALL);
+		SLICES.put("RESOLUTION_SCOPE", BindingTraceKeys.RESOLUTION_SCOPE);
+		SLICES.put("REFERENCE_TARGET", BindingTraceKeys.REFERENCE_TARGET);
+		SLICES.put("CLASS", BindingTraceKeys.CLASS);
+		SLICES.put("METHOD", BindingTraceKeys.METHOD);
+		SLICES.put("VARIABLE", BindingTraceKeys.VARIABLE);
+	}
+
+	private final String moduleName;
+	private final boolean test;
+	private final long startTime = System.currentTimeMillis();
+	private final long startWallNanos = System.nanoTime();
+	private final long startCpuNanos = currentCpuTime();
+
+	private final Map<String, Phase> phases = new LinkedHashMap<String, Phase>();
+	private final Map<String, Integer> sliceSizes = new LinkedHashMap<String, Integer>();
+
+	private Kind kind = Kind.FULL;
+	private int fileCount;
+	private int resolvedFileCount;
+	private int diagnosticCount;
+	private boolean canceled;
+	private long wallNanos;
+	private long cpuNanos;
+
+	private String currentPhase;
+	private long phaseWallNanos;
+	private long phaseCpuNanos;
+
+	public AnalyzeRecord(@NotNull String moduleName, boolean test)
+	{
+		this.moduleName = moduleName;
+		this.test = test;
+	}
+
+	private static long currentCpuTime()
+	{
+		return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+	}
+
+	/**
+	 * Finish current phase (if any), and start new one
+	 */
+	public void startPhase(@NotNull String name)
+	{
+		finishPhase();
+
+		currentPhase = name;
+		phaseWallNanos = System.nanoTime();
+		phaseCpuNanos = currentCpuTime();
+	}
+
+	public void finishPhase()
+	{
+		if(currentPhase == null)
+			return;
+
+		Phase old = phases.get(currentPhase);
+		long wall = System.nanoTime() - phaseWallNanos;
+		long cpu = currentCpuTime() - phaseCpuNanos;
+		phases.put(currentPhase, old == null ? new Phase(wall, cpu) : new Phase(old.wallNanos + wall, old.cpuNanos + cpu));
+		currentPhase = null;
+	}
+
+	/**
+	 * Finish record. If result is null - analyze is canceled or failed
+	 */
+	public void finish(@Nullable AnalyzeExhaust analyzeExhaust, boolean collectSliceSizes)
+	{
+		finishPhase();
+
+		wallNanos = System.nanoTime() - startWallNanos;
+		cpuNanos = currentCpuTime() - startCpuNanos;
+
+		if(analyzeExhaust == null)
+		{
+			canceled = true;
+			return;
+		}
+
+		BindingTrace bindingTrace = analyzeExhaust.getBindingTrace();
+		diagnosticCount = bindingTrace.getDiagnostics().size();
+		if(collectSliceSizes)
+		{
+			for(Map.Entry<String, WritableSlice<?, ?>> entry : SLICES.entrySet())
+				sliceSizes.put(entry.getKey(), bindingTrace.getKeys(entry.getValue()).size());
+		}
+	}
+
+	public void setKind(@NotNull Kind kind)
+	{
+		this.kind = kind;
+	}
+
+	public void setFileCount(int fileCount)
+	{
+		this.fileCount = fileCount;
+	}
+
+	public void setResolvedFileCount(int resolvedFileCount)
+	{
+		this.resolvedFileCount = resolvedFileCount;
+	}
+
+	@NotNull
+	public String getModuleName()
+	{
+		return moduleName;
+	}
+
+	public boolean isTest()
+	{
+		return test;
+	}
+
+	public long getStartTime()
+	{
+		return startTime;
+	}
+
+	@NotNull
+	public Kind getKind()
+	{
+		return kind;
+	}
+
+	public int getFileCount()
+	{
+		return fileCount;
+	}
+
+	public int getResolvedFileCount()
+	{
+		return resolvedFileCount;
+	}
+
+	public int getDiagnosticCount()
+	{
+		return diagnosticCount;
+	}
+
+	public boolean isCanceled()
+	{
+		return canceled;
+	}
+
+	public long getWallNanos()
+	{
+		return wallNanos;
+	}
+
+	public long getCpuNanos()
+	{
+		return cpuNanos;
+	}
+
+	@NotNull
+	public Map<String, Phase> getPhases()
+	{
+		return Collections.unmodifiableMap(phases);
+	}
+
+	@NotNull
+	public Map<String, Integer> getSliceSizes()
+	{
+		return Collections.unmodifiableMap(sliceSizes);
+	}
+
+	public void toJson(@NotNull StringBuilder builder)
+	{
+		builder.append("{\"module\": \"").append(StringUtil.escapeStringCharacters(moduleName)).append('"');
+		builder.append(", \"test\": ").append(test);
+		builder.append(", \"startTime\": ").append(startTime);
+		builder.append(", \"kind\": \"").append(kind).append('"');
+		builder.append(", \"canceled\": ").append(canceled);
+		builder.append(", \"files\": ").append(fileCount);
+		builder.append(", \"resolvedFiles\": ").append(resolvedFileCount);
+		builder.append(", \"diagnostics\": ").append(diagnosticCount);
+		builder.append(", \"wallMs\": ").append(wallNanos / 1000000);
+		builder.append(", \"cpuMs\": ").append(cpuNanos / 1000000);
+
+		builder.append(", \"phases\": {");
+		boolean first = true;
+		for(Map.Entry<String, Phase> entry : phases.entrySet())
+		{
+			if(!first)
+				builder.append(", ");
+			first = false;
+			builder.append('"').append(StringUtil.escapeStringCharacters(entry.getKey())).append("\": {\"wallMs\": ").append(entry.getValue().wallNanos / 1000000);
+			builder.append(", \"cpuMs\": ").append(entry.getValue().cpuNanos / 1000000).append('}');
+		}
+		builder.append('}');
+
+		builder.append(", \"slices\": {");
+		first = true;
+		for(Map.Entry<String, Integer> entry : sliceSizes.entrySet())
+		{
+			if(!first)
+				builder.append(", ");
+			first = false;
+			builder.append('"').append(entry.getKey()).append("\": ").append(entry.getValue());
+		}
+		builder.append("}}");
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.module.statistics;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jetbrains.annotations.NotNull;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+
+/**
+ * Keeps metrics of last module analyzes in project
+ *
+ * @author VISTALL
+ * @since 16:55/30.04.13
+ */
+public class AnalyzeStatistics
+{
+	private static final int MAX_RECORDS = 500;
+
+	@NotNull
+	public static AnalyzeStatistics getInstance(@NotNull Project project)
+	{
+		return ServiceManager.getService(project, AnalyzeStatistics.class);
+	}
+
+	private final LinkedList<AnalyzeRecord> records = new LinkedList<AnalyzeRecord>();
+	// visitor name -> [pipeline runs, total time in nanoseconds]
+	private final Map<String, long[]> postHighlightTimes = new TreeMap<String, long[]>();
+	private volatile long modificationCount;
+
+	/**
+	 * Sizes of trace slices are collected only in internal mode - it needs iterate all keys of trace
+	 */
+	public boolean isDetailed()
+	{
+		return ApplicationManager.getApplication().isInternal();
+	}
+
+	public synchronized void add(@NotNull AnalyzeRecord record)
+	{
+		records.addLast(record);
+		if(records.size() > MAX_RECORDS)
+			records.removeFirst();
+		modificationCount++;
+	}
+
+	public synchronized void addPostHighlightTime(@NotNull String visitorName, long nanos)
+	{
+		long[] value = postHighlightTimes.get(visitorName);
+		if(value == null)
+			postHighlightTimes.put(visitorName, value = new long[2]);
+		value[0]++;
+		value[1] += nanos;
+	}
+
+	/**
+	 * @return visitor name -> [pipeline runs, total time in nanoseconds]
+	 */
+	@NotNull
+	public synchronized Map<String, long[]> getPostHighlightTimes()
+	{
+		Map<String, long[]> map = new TreeMap<String, long[]>();
+		for(Map.Entry<String, long[]> entry : postHighlightTimes.entrySet())
+			map.put(entry.getKey(), entry.getValue().clone());
+		return map;
+	}
+
+	public synchronized void clear()
+	{
+		records.clear();
+		postHighlightTimes.clear();
+		modificationCount++;
+	}
+
+	@NotNull
+	public synchronized List<AnalyzeRecord> getRecords()
+	{
+		return new ArrayList<AnalyzeRecord>(records);
+	}
+
+	public long getModificationCount()
+	{
+		return modificationCount;
+	}
+
+	@NotNull
+	public String toJson()
+	{
+		StringBuilder builder = new StringBuilder();
+		builder.append("{\n  \"analyzes\": [\n");
+		List<AnalyzeRecord> list = getRecords();
+		for(int i = 0; i < list.size(); i++)
+		{
+			builder.append("    ");
+			list.get(i).toJson(builder);
+			if(i != list.size() - 1)
+				builder.append(',');
+			builder.append('\n');
+		}
+		builder.append("  ],\n  \"postHighlight\": {");
+		boolean first = true;
+		for(Map.Entry<String, long[]> entry : getPostHighlightTimes().entrySet())
+		{
+			if(!first)
+				builder.append(',');
+			first = false;
+			builder.append("\n    \"").append(entry.getKey()).append("\": {\"runs\": ").append(entry.getValue()[0]);
+			builder.append(", \"totalMs\": ").append(entry.getValue()[1] / 1000000L).append('}');
+		}
+		builder.append("\n  }\n}\n");
+		return builder.toString();
+	}
+}
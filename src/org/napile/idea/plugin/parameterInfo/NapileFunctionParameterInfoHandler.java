@@ -312,7 +312,7 @@ public class NapileFunctionParameterInfoHandler implements ParameterInfoHandlerW
 										//check type
 
 										NapileType paramType = param.getType();
-										NapileType exprType = bindingContext.get(BindingTraceKeys.EXPRESSION_TYPE, argument.getArgumentExpression());
+										NapileType exprType = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.EXPRESSION_TYPE, argument.getArgumentExpression());
 										if(exprType != null && !NapileTypeChecker.INSTANCE.isSubtypeOf(exprType, paramType))
 											isGrey = true;
 									}
@@ -355,7 +355,7 @@ public class NapileFunctionParameterInfoHandler implements ParameterInfoHandlerW
 												//check type
 
 												NapileType paramType = param.getType();
-												NapileType exprType = bindingContext.get(BindingTraceKeys.EXPRESSION_TYPE, argument.getArgumentExpression());
+												NapileType exprType = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.EXPRESSION_TYPE, argument.getArgumentExpression());
 												if(exprType != null && !NapileTypeChecker.INSTANCE.isSubtypeOf(exprType, paramType))
 												{
 													isGrey = true;
@@ -431,7 +431,6 @@ public class NapileFunctionParameterInfoHandler implements ParameterInfoHandlerW
 		{
 			return null;
 		}
-		BindingTrace bindingContext = ModuleAnalyzerUtil.lastAnalyze((NapileFile) file).getBindingTrace();
 		NapileExpression calleeExpression = callExpression.getCalleeExpression();
 		if(calleeExpression == null)
 			return null;
@@ -450,7 +449,7 @@ public class NapileFunctionParameterInfoHandler implements ParameterInfoHandlerW
 		}
 		if(refExpression != null)
 		{
-			NapileScope scope = bindingContext.get(BindingTraceKeys.RESOLUTION_SCOPE, refExpression);
+			NapileScope scope = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.RESOLUTION_SCOPE, refExpression);
 			DeclarationDescriptor placeDescriptor = null;
 			if(scope != null)
 			{
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.napile.idea.plugin.psi.file;
+
+import java.io.ByteArrayInputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.io.xml.in.AsmXmlFileReader;
+import org.napile.asm.tree.members.ClassNode;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Ref;
+import com.intellij.util.indexing.FileContent;
+
+/**
+ * Class node of nxml file is read once per indexing of file - same file content is passed to stub builder and
+ * all file based indexes, so node is stored in user data of content
+ *
+ * @author VISTALL
+ * @since 17:10/04.05.13
+ */
+public class NXmlClassNodeReader
+{
+	private static final Logger LOGGER = Logger.getInstance(NXmlClassNodeReader.class);
+
+	private static final Key<Ref<ClassNode>> CLASS_NODE = Key.create("napile.nxml.class.node");
+
+	/**
+	 * @return null if file is broken, error is shown only in internal mode
+	 */
+	@Nullable
+	public static ClassNode getClassNode(@NotNull FileContent fileContent)
+	{
+		Ref<ClassNode> ref = fileContent.getUserData(CLASS_NODE);
+		if(ref == null)
+		{
+			ref = Ref.create(read(fileContent));
+			fileContent.putUserData(CLASS_NODE, ref);
+		}
+		return ref.get();
+	}
+
+	@Nullable
+	private static ClassNode read(@NotNull FileContent fileContent)
+	{
+		try
+		{
+			return new AsmXmlFileReader().read(new ByteArrayInputStream(fileContent.getContent()));
+		}
+		catch(Throwable e)
+		{
+			if(ApplicationManager.getApplication().isInternal())
+			{
+				LOGGER.error(e);
+			}
+			return null;
+		}
+	}
+}
@@ -16,16 +16,12 @@
 
 package org.napile.idea.plugin.psi.file;
 
-import java.io.ByteArrayInputStream;
-
 import org.jetbrains.annotations.Nullable;
-import org.napile.asm.io.xml.in.AsmXmlFileReader;
 import org.napile.asm.tree.members.ClassNode;
 import org.napile.compiler.NXmlFileType;
 import org.napile.compiler.lang.psi.stubs.NapilePsiFileStub;
 import org.napile.compiler.lang.psi.stubs.elements.NapileFileElementType;
 import org.napile.compiler.util.NodeToStubBuilder;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.stubs.BinaryFileStubBuilder;
@@ -52,23 +48,7 @@ public class NXmlFileStubBuilder implements BinaryFileStubBuilder
 	@Override
 	public Stub buildStubTree(FileContent fileContent)
 	{
-		AsmXmlFileReader reader = new AsmXmlFileReader();
-
-		ClassNode classNode;
-		try
-		{
-			classNode = reader.read(new ByteArrayInputStream(fileContent.getContent()));
-		}
-		catch(Throwable e)
-		{
-			// show error only in internal mode
-			if(ApplicationManager.getApplication().isInternal())
-			{
-				LOGGER.error(e);
-			}
-			classNode = null;
-		}
-
+		ClassNode classNode = NXmlClassNodeReader.getClassNode(fileContent);
 		if(classNode == null)
 		{
 			return null;
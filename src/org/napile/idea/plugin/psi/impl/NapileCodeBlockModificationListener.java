@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.psi.impl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.psi.NapileDeclarationWithBody;
+import org.napile.compiler.lang.psi.NapileExpression;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.psi.NapileVariable;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.impl.PsiModificationTrackerImpl;
+import com.intellij.psi.impl.PsiTreeChangeEventImpl;
+import com.intellij.psi.impl.PsiTreeChangePreprocessor;
+import com.intellij.psi.util.PsiTreeUtil;
+
+/**
+ * Increase out of code block modification count, only if change is not inside method body. Also counts changes in {@link NapileModificationTracker}
+ *
+ * @author VISTALL
+ * @since 12:03/23.04.13
+ */
+public class NapileCodeBlockModificationListener implements PsiTreeChangePreprocessor
+{
+	private final PsiModificationTrackerImpl modificationTracker;
+	private final NapileModificationTracker napileModificationTracker;
+
+	public NapileCodeBlockModificationListener(PsiManager psiManager)
+	{
+		modificationTracker = (PsiModificationTrackerImpl) psiManager.getModificationTracker();
+		napileModificationTracker = NapileModificationTracker.getInstance(psiManager.getProject());
+	}
+
+	@Override
+	public void treeChanged(@NotNull PsiTreeChangeEventImpl event)
+	{
+		if(!(event.getFile() instanceof NapileFile))
+			return;
+
+		switch(event.getCode())
+		{
+			case CHILDREN_CHANGED:
+				if(event.isGenericChildrenChange())
+					return;
+			case CHILD_ADDED:
+			case CHILD_REMOVED:
+			case CHILD_REPLACED:
+			case CHILD_MOVED:
+			case PROPERTY_CHANGED:
+				boolean outOfCodeBlock = !isInsideCodeBlock(getChangedElement(event));
+				if(outOfCodeBlock)
+					modificationTracker.incOutOfCodeBlockModificationCounter();
+				napileModificationTracker.incModificationCount(outOfCodeBlock);
+				break;
+			default:
+				break;
+		}
+	}
+
+	@Nullable
+	public static PsiElement getChangedElement(@NotNull PsiTreeChangeEventImpl event)
+	{
+		PsiElement parent = event.getParent();
+		return parent == null ? event.getElement() : parent;
+	}
+
+	/**
+	 * @return true if element is inside body of method, macro, constructor or accessor, or inside initializer of variable,
+	 *         and this change can not affect declaration (ex: return type of method is inferred from expression body)
+	 */
+	public static boolean isInsideCodeBlock(@Nullable PsiElement element)
+	{
+		// find most outer declaration, which body or initializer contains element
+		PsiElement member = null;
+		for(PsiElement e = element; e != null && !(e instanceof PsiFile); e = e.getParent())
+		{
+			NapileExpression expression = null;
+			if(e instanceof NapileDeclarationWithBody)
+				expression = ((NapileDeclarationWithBody) e).getBodyExpression();
+			else if(e instanceof NapileVariable)
+				expression = ((NapileVariable) e).getInitializer();
+
+			if(expression != null && PsiTreeUtil.isAncestor(expression, element, false))
+				member = e;
+		}
+
+		if(member instanceof NapileVariable)
+			return ((NapileVariable) member).getType() != null;
+		else if(member instanceof NapileDeclarationWithBody)
+			return ((NapileDeclarationWithBody) member).hasBlockBody() || ((NapileDeclarationWithBody) member).hasDeclaredReturnType();
+		return false;
+	}
+}
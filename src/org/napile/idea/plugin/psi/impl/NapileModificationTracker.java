@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.napile.idea.plugin.psi.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
+
+/**
+ * Counts psi changes only of napile files, changes of other languages are not affect it. Increased by {@link NapileCodeBlockModificationListener}
+ *
+ * @author VISTALL
+ * @since 16:20/04.05.13
+ */
+public class NapileModificationTracker implements ModificationTracker
+{
+	@NotNull
+	public static NapileModificationTracker getInstance(@NotNull Project project)
+	{
+		return ServiceManager.getService(project, NapileModificationTracker.class);
+	}
+
+	private final AtomicLong modificationCount = new AtomicLong();
+	private final AtomicLong outOfCodeBlockModificationCount = new AtomicLong();
+
+	void incModificationCount(boolean outOfCodeBlock)
+	{
+		if(outOfCodeBlock)
+			outOfCodeBlockModificationCount.incrementAndGet();
+		modificationCount.incrementAndGet();
+	}
+
+	/**
+	 * @return count of all changes of napile files, including changes inside method bodies
+	 */
+	@Override
+	public long getModificationCount()
+	{
+		return modificationCount.get();
+	}
+
+	/**
+	 * @return count of changes of napile files, which are not inside method bodies
+	 */
+	public long getOutOfCodeBlockModificationCount()
+	{
+		return outOfCodeBlockModificationCount.get();
+	}
+}
@@ -22,6 +22,7 @@ import java.util.List;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.napile.asm.resolve.name.FqName;
 import org.napile.compiler.analyzer.AnalyzeExhaust;
 import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
 import org.napile.compiler.lang.diagnostics.Diagnostic;
@@ -29,7 +30,6 @@ import org.napile.compiler.lang.psi.NapileFile;
 import org.napile.compiler.lang.psi.NapileNamedDeclaration;
 import org.napile.compiler.lang.psi.NapileSimpleNameExpression;
 import org.napile.compiler.lang.resolve.BindingTraceKeys;
-import org.napile.compiler.lang.resolve.DescriptorUtils;
 import org.napile.idea.plugin.NapileBundle;
 import org.napile.idea.plugin.actions.NapileAddImportAction;
 import org.napile.idea.plugin.caches.NapileClassResolver;
@@ -41,7 +41,6 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.CommandProcessor;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiFile;
@@ -55,16 +54,26 @@ import com.intellij.util.IncorrectOperationException;
  */
 public class ImportClassAndFunFix extends NapileHintAction<NapileSimpleNameExpression> implements HighPriorityAction
 {
-	@NotNull
-	private final List<Pair<DeclarationDescriptor, NapileNamedDeclaration>> suggestions;
+	private volatile List<Pair<FqName, NapileNamedDeclaration>> suggestions;
 
 	public ImportClassAndFunFix(@NotNull NapileSimpleNameExpression element)
 	{
 		super(element);
-		suggestions = computeSuggestions(element);
 	}
 
-	private static List<Pair<DeclarationDescriptor, NapileNamedDeclaration>> computeSuggestions(@NotNull NapileSimpleNameExpression element)
+	/**
+	 * Suggestions are searched in indexes only when fix is shown, not when it is registered for diagnostic
+	 */
+	@NotNull
+	private List<Pair<FqName, NapileNamedDeclaration>> getSuggestions()
+	{
+		List<Pair<FqName, NapileNamedDeclaration>> value = suggestions;
+		if(value == null)
+			suggestions = value = computeSuggestions(element);
+		return value;
+	}
+
+	private static List<Pair<FqName, NapileNamedDeclaration>> computeSuggestions(@NotNull NapileSimpleNameExpression element)
 	{
 		final PsiFile file = element.getContainingFile();
 		if(file == null)
@@ -79,26 +88,13 @@ public class ImportClassAndFunFix extends NapileHintAction<NapileSimpleNameExpre
 			return Collections.emptyList();
 		}
 
-		return getDescriptorsForImport(referenceName, (NapileFile) file);
-	}
-
-	private static List<Pair<DeclarationDescriptor, NapileNamedDeclaration>> getDescriptorsForImport(@NotNull final String typeName, @NotNull NapileFile file)
-	{
-		NapileClassResolver cache = NapileClassResolver.getInstance(file.getProject());
-
-		return cache.getDescriptorsForImport(new Condition<String>()
-		{
-			@Override
-			public boolean value(String s)
-			{
-				return typeName.equals(s);
-			}
-		}, file);
+		return NapileClassResolver.getInstance(file.getProject()).getDeclarationsForImport(referenceName, (NapileFile) file);
 	}
 
 	@Override
 	public boolean showHint(@NotNull Editor editor)
 	{
+		final List<Pair<FqName, NapileNamedDeclaration>> suggestions = getSuggestions();
 		if(suggestions.isEmpty())
 		{
 			return false;
@@ -117,7 +113,7 @@ public class ImportClassAndFunFix extends NapileHintAction<NapileSimpleNameExpre
 
 		if(!ApplicationManager.getApplication().isUnitTestMode())
 		{
-			String hintText = ShowAutoImportPass.getMessage(suggestions.size() > 1, DescriptorUtils.getFQName(suggestions.get(0).getFirst()).getFqName());
+			String hintText = ShowAutoImportPass.getMessage(suggestions.size() > 1, suggestions.get(0).getFirst().getFqName());
 
 			HintManager.getInstance().showQuestionHint(editor, hintText, element.getTextOffset(), element.getTextRange().getEndOffset(), createAction(project, editor));
 		}
@@ -169,7 +165,7 @@ public class ImportClassAndFunFix extends NapileHintAction<NapileSimpleNameExpre
 	@Override
 	public boolean isAvailable(@NotNull Project project, Editor editor, PsiFile file)
 	{
-		return super.isAvailable(project, editor, file) && !suggestions.isEmpty();
+		return super.isAvailable(project, editor, file) && !getSuggestions().isEmpty();
 	}
 
 	@Override
@@ -194,7 +190,7 @@ public class ImportClassAndFunFix extends NapileHintAction<NapileSimpleNameExpre
 	@NotNull
 	private NapileAddImportAction createAction(@NotNull Project project, @NotNull Editor editor)
 	{
-		return new NapileAddImportAction(project, editor, element, suggestions);
+		return new NapileAddImportAction(project, editor, element, getSuggestions());
 	}
 
 	@Nullable
@@ -75,9 +75,9 @@ public class ImportInsertHelper
 		}
 	}
 
-	public static void addImportDirective(Pair<DeclarationDescriptor, NapileNamedDeclaration> selectedImport, NapileFile file)
+	public static void addImportDirective(Pair<FqName, NapileNamedDeclaration> selectedImport, NapileFile file)
 	{
-		addImportDirective(new ImportPath(DescriptorUtils.getFQName(selectedImport.getFirst()).toSafe(), false), null, file);
+		addImportDirective(new ImportPath(selectedImport.getFirst(), false), null, file);
 	}
 
 	/**
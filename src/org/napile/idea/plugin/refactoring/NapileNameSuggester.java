@@ -28,14 +28,12 @@ import org.napile.compiler.lang.psi.NapileCallExpression;
 import org.napile.compiler.lang.psi.NapileQualifiedExpressionImpl;
 import org.napile.compiler.lang.psi.NapileSimpleNameExpression;
 import org.napile.compiler.lang.resolve.BindingTraceKeys;
-import org.napile.compiler.lang.resolve.BindingTrace;
 import org.napile.compiler.lang.types.ErrorUtils;
 import org.napile.compiler.lang.types.NapileType;
 import org.napile.compiler.lang.types.TypeUtils;
 import org.napile.compiler.lang.types.checker.NapileTypeChecker;
 import org.napile.compiler.lang.lexer.NapileTokens;
 import org.napile.compiler.lang.psi.NapileExpression;
-import org.napile.compiler.lang.psi.NapileFile;
 import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.util.text.StringUtil;
@@ -80,8 +78,7 @@ public class NapileNameSuggester
 	{
 		ArrayList<String> result = new ArrayList<String>();
 
-		BindingTrace bindingContext = ModuleAnalyzerUtil.lastAnalyze((NapileFile) expression.getContainingFile()).getBindingTrace();
-		NapileType NapileType = bindingContext.get(BindingTraceKeys.EXPRESSION_TYPE, expression);
+		NapileType NapileType = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.EXPRESSION_TYPE, expression);
 		if(NapileType != null)
 		{
 			addNamesForType(result, NapileType, validator);
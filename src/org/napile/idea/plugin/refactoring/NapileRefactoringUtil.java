@@ -29,7 +29,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.napile.compiler.lang.psi.*;
 import org.napile.compiler.lang.resolve.BindingTraceKeys;
-import org.napile.compiler.lang.resolve.BindingTrace;
 import org.napile.compiler.lang.types.NapileType;
 import org.napile.compiler.lang.types.NamespaceType;
 import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
@@ -124,8 +123,7 @@ public class NapileRefactoringUtil
 				if(addExpression)
 				{
 					NapileExpression expression = (NapileExpression) element;
-					BindingTrace bindingContext = ModuleAnalyzerUtil.lastAnalyze(expression.getContainingFile()).getBindingTrace();
-					NapileType expressionType = bindingContext.get(BindingTraceKeys.EXPRESSION_TYPE, expression);
+					NapileType expressionType = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.EXPRESSION_TYPE, expression);
 					if(expressionType == null || !(expressionType instanceof NamespaceType))
 					{
 						expressions.add(expression);
@@ -133,11 +133,11 @@ public class NapileIntroduceVariableHandler extends NapileIntroduceHandlerBase
 				return;
 			}
 		}
-		BindingTrace bindingContext = ModuleAnalyzerUtil.lastAnalyze((NapileFile) expression.getContainingFile()).getBindingTrace();
-		final NapileType expressionType = bindingContext.get(BindingTraceKeys.EXPRESSION_TYPE, expression); //can be null or error type
-		NapileScope scope = bindingContext.get(BindingTraceKeys.RESOLUTION_SCOPE, expression);
+		final NapileType expressionType = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.EXPRESSION_TYPE, expression); //can be null or error type
+		NapileScope scope = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.RESOLUTION_SCOPE, expression);
 		if(scope != null)
 		{
+			BindingTrace bindingContext = ModuleAnalyzerUtil.lastAnalyze((NapileFile) expression.getContainingFile()).getBindingTrace();
 			DataFlowInfo dataFlowInfo = bindingContext.get(BindingTraceKeys.NON_DEFAULT_EXPRESSION_DATA_FLOW, expression);
 			if(dataFlowInfo == null)
 			{
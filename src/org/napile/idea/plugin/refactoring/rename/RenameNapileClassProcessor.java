@@ -16,13 +16,17 @@
 
 package org.napile.idea.plugin.refactoring.rename;
 
+import java.util.Collection;
 import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
 import org.napile.compiler.lang.psi.NapileClassLike;
 import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.idea.plugin.search.NapileOccurrenceSearch;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.search.searches.ReferencesSearch;
 import com.intellij.refactoring.rename.RenamePsiElementProcessor;
 
 /**
@@ -54,4 +58,11 @@ public class RenameNapileClassProcessor extends RenamePsiElementProcessor
 		}
 		super.prepareRenaming(element, newName, allRenames);
 	}
+
+	@NotNull
+	@Override
+	public Collection<PsiReference> findReferences(PsiElement element)
+	{
+		return ReferencesSearch.search(element, NapileOccurrenceSearch.restrictScope(element, element.getUseScope())).findAll();
+	}
 }
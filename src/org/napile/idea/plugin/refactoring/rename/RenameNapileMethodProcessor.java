@@ -16,9 +16,14 @@
 
 package org.napile.idea.plugin.refactoring.rename;
 
+import java.util.Collection;
+
 import org.jetbrains.annotations.NotNull;
 import org.napile.compiler.lang.psi.NapileMethod;
+import org.napile.idea.plugin.search.NapileOccurrenceSearch;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.search.searches.ReferencesSearch;
 import com.intellij.refactoring.rename.RenamePsiElementProcessor;
 
 /**
@@ -31,4 +36,11 @@ public class RenameNapileMethodProcessor extends RenamePsiElementProcessor
 	{
 		return element instanceof NapileMethod;
 	}
+
+	@NotNull
+	@Override
+	public Collection<PsiReference> findReferences(PsiElement element)
+	{
+		return ReferencesSearch.search(element, NapileOccurrenceSearch.restrictScope(element, element.getUseScope())).findAll();
+	}
 }
@@ -107,10 +107,7 @@ public abstract class NapilePsiReference implements PsiPolyVariantReference
 	@Override
 	public Object[] getVariants()
 	{
-		NapileFile file = (NapileFile) getElement().getContainingFile();
-		BindingTrace bindingContext = ModuleAnalyzerUtil.lastAnalyze(file).getBindingTrace();
-
-		NapileScope scope = bindingContext.get(BindingTraceKeys.RESOLUTION_SCOPE, myExpression);
+		NapileScope scope = ModuleAnalyzerUtil.getBodyData(BindingTraceKeys.RESOLUTION_SCOPE, myExpression);
 		if(scope == null)
 			return ArrayUtil.EMPTY_OBJECT_ARRAY;
 		else
@@ -17,16 +17,9 @@
 package org.napile.idea.plugin.run;
 
 import org.napile.asm.resolve.name.FqName;
-import org.napile.compiler.analyzer.AnalyzeExhaust;
-import org.napile.compiler.lang.descriptors.MutableClassDescriptor;
-import org.napile.compiler.lang.descriptors.SimpleMethodDescriptor;
 import org.napile.compiler.lang.psi.NapileClass;
-import org.napile.compiler.lang.psi.NapileDeclaration;
 import org.napile.compiler.lang.psi.NapileFile;
-import org.napile.compiler.lang.resolve.BindingTraceKeys;
-import org.napile.compiler.lang.resolve.DescriptorUtils;
-import org.napile.compiler.util.RunUtil;
-import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
+import org.napile.idea.plugin.util.IdePsiUtil;
 import com.intellij.execution.actions.ConfigurationContext;
 import com.intellij.execution.actions.RunConfigurationProducer;
 import com.intellij.openapi.module.Module;
@@ -56,44 +49,24 @@ public class NapileConfigurationProducer extends RunConfigurationProducer<Napile
 			return false;
 		}
 
-		AnalyzeExhaust analyzeExhaust = ModuleAnalyzerUtil.lastAnalyze(napileClass.getContainingFile());
-
-		MutableClassDescriptor descriptor = (MutableClassDescriptor) analyzeExhaust.getBindingTrace().get(BindingTraceKeys.CLASS, napileClass);
-		if(descriptor == null)
+		FqName fqName = napileClass.getFqName();
+		if(fqName == null || !IdePsiUtil.hasRunMethod(napileClass))
 		{
 			return false;
 		}
 
-		NapileDeclaration mainMethod = null;
-		for(NapileDeclaration inner : napileClass.getDeclarations())
+		Module module = napileClass.isValid() ? ModuleUtilCore.findModuleForPsiElement(napileClass) : null;
+		if(module == null)
 		{
-			SimpleMethodDescriptor methodDescriptor = analyzeExhaust.getBindingTrace().get(BindingTraceKeys.METHOD, inner);
-			if(methodDescriptor != null && RunUtil.isRunPoint(methodDescriptor))
-			{
-				mainMethod = inner;
-				break;
-			}
+			return false;
 		}
 
-		if(mainMethod != null)
-		{
-			Module module = mainMethod.isValid() ? ModuleUtilCore.findModuleForPsiElement(mainMethod) : null;
-			if(module == null)
-			{
-				return false;
-			}
-
-			FqName fqName = DescriptorUtils.getFQName(descriptor).toSafe();
-
-			runConfiguration.setModule(module);
-			runConfiguration.setName(fqName.getFqName());
-			runConfiguration.mainClass = fqName.getFqName();
+		runConfiguration.setModule(module);
+		runConfiguration.setName(fqName.getFqName());
+		runConfiguration.mainClass = fqName.getFqName();
 
-			psiElementRef.set(napileClass);
-			return true;
-		}
-
-		return false;
+		psiElementRef.set(napileClass);
+		return true;
 	}
 
 	@Override
@@ -19,14 +19,16 @@ package org.napile.idea.plugin.run;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
-import javax.swing.JTextField;
 
 import org.jetbrains.annotations.NotNull;
+import org.napile.idea.plugin.run.ui.NapileClassBrowser;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.options.ConfigurationException;
 import com.intellij.openapi.options.SettingsEditor;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.TextFieldWithBrowseButton;
+import com.intellij.openapi.util.Computable;
 
 /**
  * @author VISTALL
@@ -52,7 +54,7 @@ public class NapileRunSettingsEditor extends SettingsEditor<NapileRunConfigurati
 
 	private JPanel rootPanel;
 	private JComboBox moduleList;
-	private JTextField mainClassField;
+	private TextFieldWithBrowseButton mainClassField;
 
 	private final Project project;
 
@@ -66,19 +68,17 @@ public class NapileRunSettingsEditor extends SettingsEditor<NapileRunConfigurati
 			moduleList.addItem(new ModuleItem(m));
 		}
 
-		/*mainClassField.addActionListener(new ActionListener()
+		// browser adds itself as listener of field, so it's created only once
+		NapileClassBrowser classBrowser = NapileClassBrowser.createApplicationClassBrowser(project, new Computable<Module>()
 		{
 			@Override
-			public void actionPerformed(ActionEvent e)
+			public Module compute()
 			{
 				ModuleItem moduleItem = (ModuleItem) moduleList.getSelectedItem();
-				if(moduleItem == null)
-					return;
-				NapileClassBrowser b = NapileClassBrowser.createApplicationClassBrowser(project, moduleItem.module);
-				b.setField(mainClassField);
-				b.actionPerformed(e);
+				return moduleItem == null ? null : moduleItem.module;
 			}
-		}); */
+		});
+		classBrowser.setField(mainClassField);
 	}
 
 	private void createUIComponents()
@@ -29,7 +29,9 @@ import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.search.GlobalSearchScope;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.napile.asm.resolve.name.FqName;
 import org.napile.compiler.lang.psi.NapileClassLike;
+import org.napile.idea.plugin.caches.NapileAnnotationSearch;
 import org.napile.idea.plugin.caches.NapileClassResolver;
 import org.napile.idea.plugin.psi.filter.NapileClassFilterWithScope;
 import org.napile.idea.plugin.util.IdePsiUtil;
@@ -86,7 +88,9 @@ public abstract class NapileClassBrowser extends BrowseModuleValueActionListener
 	private void configureDialog(final TreeChooser<NapileClassLike> dialog)
 	{
 		final String className = getText();
-		final NapileClassLike psiClass = findClass(className);
+		NapileClassLike psiClass = findClass(className);
+		if(psiClass == null)
+			psiClass = findDefaultClass();
 		if(psiClass == null)
 			return;
 		final PsiDirectory directory = psiClass.getContainingFile().getContainingDirectory();
@@ -97,8 +101,17 @@ public abstract class NapileClassBrowser extends BrowseModuleValueActionListener
 
 	protected abstract NapileClassLike findClass(String className);
 
+	@Nullable
+	protected NapileClassLike findDefaultClass()
+	{
+		return null;
+	}
+
+	/**
+	 * @param module provider of module, which classes are shown - it's called each time when dialog is shown
+	 */
 	@NotNull
-	public static NapileClassBrowser createApplicationClassBrowser(final Project project, final Module module)
+	public static NapileClassBrowser createApplicationClassBrowser(final Project project, final Computable<Module> module)
 	{
 		final NapileClassFilterWithScope applicationClass = new NapileClassFilterWithScope()
 		{
@@ -134,9 +147,9 @@ public abstract class NapileClassBrowser extends BrowseModuleValueActionListener
 	private abstract static class MainClassBrowser extends NapileClassBrowser
 	{
 		protected final Project myProject;
-		protected final Module module;
+		protected final Computable<Module> module;
 
-		public MainClassBrowser(final Project project, final Module module, final String title)
+		public MainClassBrowser(final Project project, final Computable<Module> module, final String title)
 		{
 			super(project, title);
 			myProject = project;
@@ -157,14 +170,35 @@ public abstract class NapileClassBrowser extends BrowseModuleValueActionListener
 			}
 		}
 
+		@Override
+		protected NapileClassLike findDefaultClass()
+		{
+			try
+			{
+				// select first entry point, names are taken from index - classes are not analyzed
+				for(FqName fqName : NapileAnnotationSearch.findRunnableClasses(myProject, getFilter().getScope()))
+				{
+					NapileClassLike classLike = findClass(fqName.getFqName());
+					if(classLike != null)
+						return classLike;
+				}
+				return null;
+			}
+			catch(NoFilterException e)
+			{
+				return null;
+			}
+		}
+
 		@Override
 		protected NapileClassFilterWithScope getFilter() throws NoFilterException
 		{
+			final Module selectedModule = module.compute();
 			final GlobalSearchScope scope;
-			if(module == null)
+			if(selectedModule == null)
 				scope = GlobalSearchScope.allScope(myProject);
 			else
-				scope = GlobalSearchScope.moduleScope(module);
+				scope = GlobalSearchScope.moduleScope(selectedModule);
 
 			final NapileClassFilterWithScope filter = createFilter();
 			return new NapileClassFilterWithScope()
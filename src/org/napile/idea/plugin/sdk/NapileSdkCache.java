@@ -0,0 +1,441 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.sdk;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.LangVersion;
+import org.napile.asm.io.xml.out.AsmXmlFileWriter;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.compiler.NapileFileType;
+import org.napile.compiler.analyzer.AnalyzeContext;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.codegen.CompilationErrorHandler;
+import org.napile.compiler.codegen.GenerationState;
+import org.napile.compiler.codegen.Progress;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.idea.plugin.util.LongRunningReadTask;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicatorProvider;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.projectRoots.ProjectJdkTable;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.projectRoots.SdkModificator;
+import com.intellij.openapi.roots.OrderRootType;
+import com.intellij.openapi.util.EmptyRunnable;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.containers.ConcurrentHashSet;
+
+/**
+ * Cache of compiled sdk library. Sources of sdk 'lib' directory are compiled once to nxml files in system directory,
+ * and nxml files are used as bootpath of module analyze - they are parsed and resolved only on declaration level.
+ * Cache directory name is hash of library sources, so changes of sdk create new cache. Cache is registered as classes root of sdk,
+ * so it is indexed and is in library scope like other sdk classes. Caches which are not used by any sdk are deleted
+ *
+ * @author VISTALL
+ * @since 12:20/28.04.13
+ */
+public class NapileSdkCache
+{
+	private static final Logger LOGGER = Logger.getInstance(NapileSdkCache.class);
+
+	private static final String COMPLETE_MARKER = ".complete";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final Map<String, String> hashes = new ConcurrentHashMap<String, String>();
+	private final Map<String, VirtualFile> roots = new ConcurrentHashMap<String, VirtualFile>();
+	private final ConcurrentHashSet<String> building = new ConcurrentHashSet<String>();
+	private final ConcurrentHashSet<String> failed = new ConcurrentHashSet<String>();
+
+	public NapileSdkCache()
+	{
+		ApplicationManager.getApplication().getMessageBus().connect().subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter()
+		{
+			@Override
+			public void after(@NotNull List<? extends VFileEvent> events)
+			{
+				for(VFileEvent event : events)
+					dropHash(event.getPath());
+			}
+		});
+	}
+
+	/**
+	 * Hash of 'lib' directory is calculated again after change of any file inside it
+	 */
+	private void dropHash(@NotNull String path)
+	{
+		for(String libPath : hashes.keySet())
+		{
+			if(FileUtil.isAncestor(libPath, path, false) || FileUtil.isAncestor(path, libPath, false))
+				hashes.remove(libPath);
+		}
+	}
+
+	@NotNull
+	public static NapileSdkCache getInstance()
+	{
+		return ServiceManager.getService(NapileSdkCache.class);
+	}
+
+	/**
+	 * @return root of compiled sdk library, if cache is ready, or 'lib' directory with sources (cache will be build in background)
+	 */
+	@Nullable
+	public VirtualFile getBootpath(@NotNull Project project, @NotNull Sdk sdk)
+	{
+		VirtualFile lib = getLib(sdk);
+		if(lib == null)
+			return null;
+
+		String hash = getHash(lib);
+
+		VirtualFile cacheRoot = roots.get(hash);
+		if(cacheRoot != null && cacheRoot.isValid())
+		{
+			registerRoot(sdk, cacheRoot);
+			return cacheRoot;
+		}
+
+		File cacheDir = new File(getCacheDirectory(), hash);
+		if(new File(cacheDir, COMPLETE_MARKER).exists())
+		{
+			cacheRoot = LocalFileSystem.getInstance().findFileByIoFile(cacheDir);
+			if(cacheRoot != null)
+			{
+				roots.put(hash, cacheRoot);
+				registerRoot(sdk, cacheRoot);
+
+				// caches of previous ide sessions
+				ApplicationManager.getApplication().executeOnPooledThread(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						pruneCaches();
+					}
+				});
+				return cacheRoot;
+			}
+		}
+
+		scheduleBuild(project, sdk, lib, hash, cacheDir);
+		return lib;
+	}
+
+	@Nullable
+	private static VirtualFile getLib(@NotNull Sdk sdk)
+	{
+		VirtualFile homeDirectory = sdk.getHomeDirectory();
+		return homeDirectory == null ? null : homeDirectory.findChild("lib");
+	}
+
+	private void scheduleBuild(@NotNull final Project project, @NotNull final Sdk sdk, @NotNull final VirtualFile lib, @NotNull final String hash, @NotNull final File cacheDir)
+	{
+		// if build was failed, sources of 'lib' are used until they are changed
+		if(failed.contains(hash) || !building.add(hash))
+			return;
+
+		ApplicationManager.getApplication().executeOnPooledThread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					if(project.isDisposed())
+						return;
+
+					final File tempDir = new File(cacheDir.getPath() + TEMP_SUFFIX);
+					final Ref<Boolean> success = Ref.create(Boolean.FALSE);
+					while(true)
+					{
+						if(project.isDisposed())
+							return;
+
+						FileUtil.delete(tempDir);
+						try
+						{
+							LongRunningReadTask.runWithWriteActionPriority(new ProgressIndicatorBase(), new Runnable()
+							{
+								@Override
+								public void run()
+								{
+									success.set(compile(project, lib, tempDir));
+								}
+							});
+							break;
+						}
+						catch(ProcessCanceledException e)
+						{
+							// canceled by write action - wait it, and start again
+							ApplicationManager.getApplication().invokeAndWait(EmptyRunnable.getInstance(), ModalityState.any());
+						}
+					}
+
+					if(!success.get())
+					{
+						if(!project.isDisposed())
+							failed.add(hash);
+						return;
+					}
+
+					FileUtil.delete(cacheDir);
+					if(!tempDir.renameTo(cacheDir))
+					{
+						LOGGER.warn("Failed to move compiled sdk library from " + tempDir + " to " + cacheDir);
+						failed.add(hash);
+						return;
+					}
+
+					if(!new File(cacheDir, COMPLETE_MARKER).createNewFile())
+					{
+						LOGGER.warn("Failed to create " + COMPLETE_MARKER + " in " + cacheDir);
+						failed.add(hash);
+						return;
+					}
+
+					VirtualFile cacheRoot = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(cacheDir);
+					if(cacheRoot != null)
+					{
+						roots.put(hash, cacheRoot);
+						registerRoot(sdk, cacheRoot);
+					}
+
+					pruneCaches();
+				}
+				catch(IOException e)
+				{
+					LOGGER.warn(e);
+					failed.add(hash);
+				}
+				finally
+				{
+					building.remove(hash);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Replaces roots of previous caches in classes roots of sdk by given cache root
+	 */
+	private static void registerRoot(@NotNull final Sdk sdk, @NotNull final VirtualFile cacheRoot)
+	{
+		if(ArrayUtil.contains(cacheRoot, sdk.getRootProvider().getFiles(OrderRootType.CLASSES)))
+			return;
+
+		ApplicationManager.getApplication().invokeLater(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if(!cacheRoot.isValid() || ProjectJdkTable.getInstance().findJdk(sdk.getName()) != sdk || ArrayUtil.contains(cacheRoot, sdk.getRootProvider().getFiles(OrderRootType.CLASSES)))
+					return;
+
+				ApplicationManager.getApplication().runWriteAction(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						SdkModificator sdkModificator = sdk.getSdkModificator();
+						for(VirtualFile root : sdkModificator.getRoots(OrderRootType.CLASSES))
+						{
+							if(FileUtil.isAncestor(getCacheDirectory(), VfsUtilCore.virtualToIoFile(root), true))
+								sdkModificator.removeRoot(root, OrderRootType.CLASSES);
+						}
+						sdkModificator.addRoot(cacheRoot, OrderRootType.CLASSES);
+						sdkModificator.commitChanges();
+					}
+				});
+			}
+		}, ModalityState.NON_MODAL);
+	}
+
+	/**
+	 * Deletes caches, which hash is not hash of library of any napile sdk - library was changed, or sdk was removed
+	 */
+	private void pruneCaches()
+	{
+		final Set<String> currentHashes = new HashSet<String>();
+		for(Sdk sdk : ProjectJdkTable.getInstance().getSdksOfType(NapileSdkType.getInstance()))
+		{
+			VirtualFile lib = getLib(sdk);
+			if(lib != null)
+				currentHashes.add(getHash(lib));
+		}
+
+		File[] cacheDirs = getCacheDirectory().listFiles();
+		if(cacheDirs == null)
+			return;
+
+		for(File cacheDir : cacheDirs)
+		{
+			String hash = StringUtil.trimEnd(cacheDir.getName(), TEMP_SUFFIX);
+			if(currentHashes.contains(hash) || building.contains(hash))
+				continue;
+
+			roots.remove(hash);
+			FileUtil.delete(cacheDir);
+		}
+
+		LocalFileSystem.getInstance().refreshIoFiles(Collections.singletonList(getCacheDirectory()), true, true, null);
+	}
+
+	private static boolean compile(@NotNull Project project, @NotNull VirtualFile lib, @NotNull File outDir)
+	{
+		if(project.isDisposed())
+			return false;
+
+		final List<NapileFile> files = new ArrayList<NapileFile>();
+		collectFiles(PsiManager.getInstance(project), lib, files);
+
+		try
+		{
+			ProgressIndicatorProvider.checkCanceled();
+
+			AnalyzeContext analyzeContext = new AnalyzeContext(files, new ArrayList<VirtualFile>(), new ArrayList<VirtualFile>());
+			AnalyzeExhaust analyzeExhaust = AnalyzerFacade.analyzeFiles(project, analyzeContext, Predicates.<NapileFile>alwaysTrue());
+			if(analyzeExhaust.isError())
+				return false;
+
+			ProgressIndicatorProvider.checkCanceled();
+
+			GenerationState generationState = new GenerationState(project, Progress.DEAF, analyzeExhaust, files);
+			generationState.compileAndGenerate(CompilationErrorHandler.THROW_EXCEPTION);
+
+			AsmXmlFileWriter writer = new AsmXmlFileWriter(outDir);
+			for(ClassNode classNode : generationState.getClassNodes().values())
+			{
+				ProgressIndicatorProvider.checkCanceled();
+
+				writer.write(LangVersion.CURRENT, classNode);
+			}
+			return true;
+		}
+		catch(ProcessCanceledException e)
+		{
+			throw e;
+		}
+		catch(RuntimeException e)
+		{
+			LOGGER.warn("Failed to compile sdk library: " + lib.getPath(), e);
+			return false;
+		}
+	}
+
+	private static void collectFiles(@NotNull PsiManager psiManager, @NotNull VirtualFile virtualFile, @NotNull List<NapileFile> files)
+	{
+		ProgressIndicatorProvider.checkCanceled();
+
+		if(virtualFile.isDirectory())
+		{
+			for(VirtualFile child : virtualFile.getChildren())
+				collectFiles(psiManager, child, files);
+		}
+		else if(virtualFile.getFileType() == NapileFileType.INSTANCE)
+		{
+			PsiFile psiFile = psiManager.findFile(virtualFile);
+			if(psiFile instanceof NapileFile)
+				files.add((NapileFile) psiFile);
+		}
+	}
+
+	@NotNull
+	private String getHash(@NotNull VirtualFile lib)
+	{
+		String hash = hashes.get(lib.getPath());
+		if(hash == null)
+		{
+			hash = calcHash(VfsUtilCore.virtualToIoFile(lib));
+			hashes.put(lib.getPath(), hash);
+		}
+		return hash;
+	}
+
+	@NotNull
+	private static String calcHash(@NotNull File lib)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			digest.update(LangVersion.CURRENT.toString().getBytes());
+			updateHash(digest, lib, "");
+
+			StringBuilder builder = new StringBuilder();
+			for(byte b : digest.digest())
+				builder.append(String.format("%02x", b));
+			return builder.toString();
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void updateHash(@NotNull MessageDigest digest, @NotNull File file, @NotNull String path)
+	{
+		File[] children = file.listFiles();
+		if(children == null)
+		{
+			digest.update((path + ":" + file.length() + ":" + file.lastModified()).getBytes());
+			return;
+		}
+
+		Arrays.sort(children);
+		for(File child : children)
+			updateHash(digest, child, path + "/" + child.getName());
+	}
+
+	@NotNull
+	private static File getCacheDirectory()
+	{
+		return new File(PathManager.getSystemPath(), "napile-sdk-cache");
+	}
+}
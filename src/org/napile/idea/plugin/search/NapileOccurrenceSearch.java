@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.search;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.NapileFileType;
+import org.napile.compiler.lang.psi.NapileClass;
+import org.napile.compiler.lang.psi.NapileClassBody;
+import org.napile.compiler.lang.psi.NapileMethod;
+import org.napile.idea.plugin.stubindex.NapileIdentifierOccurrenceIndex;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+
+/**
+ * Narrowing of search scope by {@link NapileIdentifierOccurrenceIndex}. Files, where name of declaration is found only in contexts,
+ * where declaration can not be referenced(for example method name only as type reference), are removed from scope - so they are not
+ * resolved at all
+ *
+ * @author VISTALL
+ * @since 15:40/04.05.13
+ */
+public class NapileOccurrenceSearch
+{
+	private static final int CLASS_CONTEXTS = NapileIdentifierOccurrenceIndex.TYPE_REFERENCE | NapileIdentifierOccurrenceIndex.CALLEE | NapileIdentifierOccurrenceIndex.RECEIVER | NapileIdentifierOccurrenceIndex.IMPORT;
+	private static final int METHOD_CONTEXTS = NapileIdentifierOccurrenceIndex.CALLEE | NapileIdentifierOccurrenceIndex.IMPORT | NapileIdentifierOccurrenceIndex.OTHER;
+
+	@NotNull
+	public static SearchScope restrictScope(@NotNull PsiElement element, @NotNull SearchScope scope)
+	{
+		if(!(scope instanceof GlobalSearchScope) || DumbService.isDumb(element.getProject()))
+			return scope;
+
+		String name;
+		int contexts;
+		if(element instanceof NapileClass)
+		{
+			name = ((NapileClass) element).getName();
+			contexts = CLASS_CONTEXTS;
+		}
+		else if(element instanceof NapileMethod && element.getParent() instanceof NapileClassBody)
+		{
+			name = ((NapileMethod) element).getName();
+			contexts = METHOD_CONTEXTS;
+		}
+		else
+			return scope;
+
+		if(name == null)
+			return scope;
+
+		final GlobalSearchScope globalSearchScope = (GlobalSearchScope) scope;
+		final int searchContexts = contexts;
+		final Set<VirtualFile> files = new HashSet<VirtualFile>();
+		FileBasedIndex.getInstance().processValues(NapileIdentifierOccurrenceIndex.NAME, name, null, new FileBasedIndex.ValueProcessor<Integer>()
+		{
+			@Override
+			public boolean process(VirtualFile file, Integer value)
+			{
+				if((value & searchContexts) != 0)
+					files.add(file);
+				return true;
+			}
+		}, globalSearchScope);
+
+		// only sources are indexed, other files(compiled classes, files with text occurrences) are searched as before
+		GlobalSearchScope otherFilesScope = globalSearchScope.intersectWith(GlobalSearchScope.notScope(GlobalSearchScope.getScopeRestrictedByFileTypes(globalSearchScope, NapileFileType.INSTANCE)));
+		return GlobalSearchScope.filesScope(element.getProject(), files).uniteWith(otherFilesScope);
+	}
+}
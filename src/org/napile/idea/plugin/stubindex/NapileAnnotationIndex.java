@@ -0,0 +1,200 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.stubindex;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.lib.NapileLangPackage;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.AbstractMemberNode;
+import org.napile.asm.tree.members.AnnotableNode;
+import org.napile.asm.tree.members.AnnotationNode;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.compiler.NXmlFileType;
+import org.napile.compiler.NapileFileType;
+import org.napile.compiler.lang.psi.NapileAnnotation;
+import org.napile.compiler.lang.psi.NapileExpression;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.psi.NapileImportDirective;
+import org.napile.compiler.lang.psi.NapileTypeElement;
+import org.napile.compiler.lang.psi.NapileTypeReference;
+import org.napile.compiler.lang.psi.NapileUserType;
+import org.napile.idea.plugin.psi.file.NXmlClassNodeReader;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+
+/**
+ * FqName of annotation -> files, which have declarations annotated by it.
+ * Stubs are not store annotations, that why index is built from psi of sources and from class nodes of libraries.
+ * In sources annotation names are resolved by qualifier and imports, not qualified name which is not imported by name,
+ * is stored for every package where it can be found(package of file, napile.lang and all under imports)
+ *
+ * @author VISTALL
+ * @since 13:30/04.05.13
+ */
+public class NapileAnnotationIndex extends ScalarIndexExtension<String>
+{
+	public static final ID<String, Void> NAME = ID.create("napile.annotations");
+
+	private static final DataIndexer<String, Void, FileContent> INDEXER = new DataIndexer<String, Void, FileContent>()
+	{
+		@NotNull
+		@Override
+		public Map<String, Void> map(FileContent inputData)
+		{
+			if(inputData.getFileType() == NXmlFileType.INSTANCE)
+				return mapClassNode(inputData);
+
+			PsiFile psiFile = inputData.getPsiFile();
+			if(!(psiFile instanceof NapileFile))
+				return Collections.emptyMap();
+
+			Map<String, Void> map = new HashMap<String, Void>();
+			for(NapileAnnotation annotation : PsiTreeUtil.findChildrenOfType(psiFile, NapileAnnotation.class))
+			{
+				for(String fqName : getAnnotationFqNames(annotation, (NapileFile) psiFile))
+					map.put(fqName, null);
+			}
+			return map;
+		}
+	};
+
+	@NotNull
+	private static Map<String, Void> mapClassNode(FileContent inputData)
+	{
+		ClassNode classNode = NXmlClassNodeReader.getClassNode(inputData);
+		if(classNode == null)
+			return Collections.emptyMap();
+
+		Map<String, Void> map = new HashMap<String, Void>();
+		mapAnnotations(classNode, map);
+		for(AbstractMemberNode<?> memberNode : classNode.getMembers())
+			mapAnnotations(memberNode, map);
+		return map;
+	}
+
+	private static void mapAnnotations(@NotNull AnnotableNode<?> node, @NotNull Map<String, Void> map)
+	{
+		for(AnnotationNode annotationNode : node.annotations)
+		{
+			if(annotationNode.type.typeConstructorNode instanceof ClassTypeNode)
+				map.put(((ClassTypeNode) annotationNode.type.typeConstructorNode).className.getFqName(), null);
+		}
+	}
+
+	/**
+	 * @return names of classes, which can be referenced by annotation. Name is resolved without analyze - by qualifier and
+	 * imports of file, if it not possible - all candidates are returned
+	 */
+	@NotNull
+	public static Set<String> getAnnotationFqNames(@NotNull NapileAnnotation annotation, @NotNull NapileFile file)
+	{
+		NapileTypeReference typeReference = annotation.getTypeReference();
+		NapileTypeElement typeElement = typeReference == null ? null : typeReference.getTypeElement();
+		if(!(typeElement instanceof NapileUserType))
+			return Collections.emptySet();
+
+		NapileUserType userType = (NapileUserType) typeElement;
+		String name = userType.getReferencedName();
+		if(name == null)
+			return Collections.emptySet();
+
+		NapileUserType qualifier = userType.getQualifier();
+		if(qualifier != null)
+			return Collections.singleton(qualifier.getText() + "." + name);
+
+		Set<String> result = new LinkedHashSet<String>();
+		for(NapileImportDirective importDirective : file.getImportDirectives())
+		{
+			NapileExpression importedReference = importDirective.getImportedReference();
+			if(importedReference == null)
+				continue;
+
+			String importedName = importedReference.getText();
+			if(importDirective.isAllUnder())
+				result.add(importedName + "." + name);
+			else if(importDirective.getAliasName() != null ? name.equals(importDirective.getAliasName()) : importedName.endsWith("." + name))
+				return Collections.singleton(importedName);
+		}
+
+		FqName packageFqName = file.getPackageFqName();
+		result.add(packageFqName.isRoot() ? name : packageFqName.getFqName() + "." + name);
+		result.add(NapileLangPackage.PACKAGE.getFqName() + "." + name);
+		return result;
+	}
+
+	private static final FileBasedIndex.InputFilter INPUT_FILTER = new FileBasedIndex.InputFilter()
+	{
+		@Override
+		public boolean acceptInput(VirtualFile file)
+		{
+			return file.getFileType() == NapileFileType.INSTANCE || file.getFileType() == NXmlFileType.INSTANCE;
+		}
+	};
+
+	@NotNull
+	@Override
+	public ID<String, Void> getName()
+	{
+		return NAME;
+	}
+
+	@NotNull
+	@Override
+	public DataIndexer<String, Void, FileContent> getIndexer()
+	{
+		return INDEXER;
+	}
+
+	@Override
+	public KeyDescriptor<String> getKeyDescriptor()
+	{
+		return new EnumeratorStringDescriptor();
+	}
+
+	@Override
+	public FileBasedIndex.InputFilter getInputFilter()
+	{
+		return INPUT_FILTER;
+	}
+
+	@Override
+	public boolean dependsOnFileContent()
+	{
+		return true;
+	}
+
+	@Override
+	public int getVersion()
+	{
+		return 0;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.stubindex;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.compiler.NXmlFileType;
+import org.napile.compiler.NapileFileType;
+import org.napile.compiler.lang.psi.NapileSuperListOwner;
+import org.napile.compiler.lang.psi.NapileTypeElement;
+import org.napile.compiler.lang.psi.NapileTypeReference;
+import org.napile.compiler.lang.psi.NapileUserType;
+import org.napile.idea.plugin.psi.file.NXmlClassNodeReader;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+
+/**
+ * Short name of super type -> files, which have classes, anonym classes or enum values, extending it.
+ * Stubs of classes are not store super types, that why index is built from psi of sources and from class nodes of libraries
+ *
+ * @author VISTALL
+ * @since 10:15/03.05.13
+ */
+public class NapileDirectInheritorsIndex extends ScalarIndexExtension<String>
+{
+	public static final ID<String, Void> NAME = ID.create("napile.direct.inheritors");
+
+	private static final DataIndexer<String, Void, FileContent> INDEXER = new DataIndexer<String, Void, FileContent>()
+	{
+		@NotNull
+		@Override
+		public Map<String, Void> map(FileContent inputData)
+		{
+			if(inputData.getFileType() == NXmlFileType.INSTANCE)
+				return mapClassNode(inputData);
+
+			PsiFile psiFile = inputData.getPsiFile();
+
+			Map<String, Void> map = new HashMap<String, Void>();
+			for(NapileSuperListOwner owner : PsiTreeUtil.findChildrenOfType(psiFile, NapileSuperListOwner.class))
+			{
+				for(NapileTypeReference typeReference : owner.getSuperTypes())
+				{
+					NapileTypeElement typeElement = typeReference.getTypeElement();
+					if(typeElement instanceof NapileUserType)
+					{
+						String name = ((NapileUserType) typeElement).getReferencedName();
+						if(name != null)
+							map.put(name, null);
+					}
+				}
+			}
+			return map;
+		}
+	};
+
+	@NotNull
+	private static Map<String, Void> mapClassNode(FileContent inputData)
+	{
+		ClassNode classNode = NXmlClassNodeReader.getClassNode(inputData);
+		if(classNode == null)
+			return Collections.emptyMap();
+
+		Map<String, Void> map = new HashMap<String, Void>();
+		for(TypeNode typeNode : classNode.supers)
+		{
+			if(typeNode.typeConstructorNode instanceof ClassTypeNode)
+				map.put(((ClassTypeNode) typeNode.typeConstructorNode).className.shortName().getName(), null);
+		}
+		return map;
+	}
+
+	private static final FileBasedIndex.InputFilter INPUT_FILTER = new FileBasedIndex.InputFilter()
+	{
+		@Override
+		public boolean acceptInput(VirtualFile file)
+		{
+			return file.getFileType() == NapileFileType.INSTANCE || file.getFileType() == NXmlFileType.INSTANCE;
+		}
+	};
+
+	@NotNull
+	@Override
+	public ID<String, Void> getName()
+	{
+		return NAME;
+	}
+
+	@NotNull
+	@Override
+	public DataIndexer<String, Void, FileContent> getIndexer()
+	{
+		return INDEXER;
+	}
+
+	@Override
+	public KeyDescriptor<String> getKeyDescriptor()
+	{
+		return new EnumeratorStringDescriptor();
+	}
+
+	@Override
+	public FileBasedIndex.InputFilter getInputFilter()
+	{
+		return INPUT_FILTER;
+	}
+
+	@Override
+	public boolean dependsOnFileContent()
+	{
+		return true;
+	}
+
+	@Override
+	public int getVersion()
+	{
+		return 0;
+	}
+}
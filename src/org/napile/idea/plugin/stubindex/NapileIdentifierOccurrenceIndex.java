@@ -0,0 +1,192 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.stubindex;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.NapileFileType;
+import org.napile.compiler.lang.psi.NapileCallElement;
+import org.napile.compiler.lang.psi.NapileNamedDeclaration;
+import org.napile.compiler.lang.psi.NapileQualifiedExpressionImpl;
+import org.napile.compiler.lang.psi.NapileSimpleNameExpression;
+import org.napile.compiler.lang.psi.NapileUserType;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+
+/**
+ * Identifier -> contexts of its occurrences in source file. Context is taken from psi without resolving, so find usages and rename
+ * can skip files, where name is used only in place, where searched declaration can not be referenced
+ *
+ * @author VISTALL
+ * @since 15:10/04.05.13
+ */
+public class NapileIdentifierOccurrenceIndex extends FileBasedIndexExtension<String, Integer>
+{
+	public static final ID<String, Integer> NAME = ID.create("napile.identifier.occurrences");
+
+	public static final int CALLEE = 1;
+	public static final int TYPE_REFERENCE = 1 << 1;
+	public static final int RECEIVER = 1 << 2;
+	public static final int IMPORT = 1 << 3;
+	public static final int DECLARATION = 1 << 4;
+	public static final int OTHER = 1 << 5;
+
+	private static final DataIndexer<String, Integer, FileContent> INDEXER = new DataIndexer<String, Integer, FileContent>()
+	{
+		@NotNull
+		@Override
+		public Map<String, Integer> map(FileContent inputData)
+		{
+			PsiFile psiFile = inputData.getPsiFile();
+
+			Map<String, Integer> map = new HashMap<String, Integer>();
+			for(NapileSimpleNameExpression expression : PsiTreeUtil.findChildrenOfType(psiFile, NapileSimpleNameExpression.class))
+			{
+				String name = expression.getReferencedName();
+				if(name != null)
+					put(map, name, getContext(expression));
+			}
+
+			for(NapileNamedDeclaration declaration : PsiTreeUtil.findChildrenOfType(psiFile, NapileNamedDeclaration.class))
+			{
+				String name = declaration.getName();
+				if(name != null)
+					put(map, name, DECLARATION);
+			}
+			return map;
+		}
+	};
+
+	private static int getContext(@NotNull NapileSimpleNameExpression expression)
+	{
+		if(expression.isImportDirectiveExpression())
+			return IMPORT;
+
+		if(expression.getParent() instanceof NapileUserType)
+			return TYPE_REFERENCE;
+
+		return getExpressionContext(expression);
+	}
+
+	/**
+	 * Selector of qualified expression(<code>Foo</code> in <code>pkg.Foo.bar()</code>) have context of whole qualified expression
+	 */
+	private static int getExpressionContext(@NotNull PsiElement expression)
+	{
+		PsiElement parent = expression.getParent();
+		if(parent instanceof NapileCallElement && ((NapileCallElement) parent).getCalleeExpression() == expression)
+			return CALLEE;
+		if(parent instanceof NapileQualifiedExpressionImpl)
+		{
+			NapileQualifiedExpressionImpl qualifiedExpression = (NapileQualifiedExpressionImpl) parent;
+			if(qualifiedExpression.getReceiverExpression() == expression)
+				return RECEIVER;
+			if(qualifiedExpression.getSelectorExpression() == expression)
+				return getExpressionContext(qualifiedExpression);
+		}
+		return OTHER;
+	}
+
+	private static void put(@NotNull Map<String, Integer> map, @NotNull String name, int context)
+	{
+		Integer old = map.get(name);
+		map.put(name, old == null ? context : old | context);
+	}
+
+	private static final DataExternalizer<Integer> EXTERNALIZER = new DataExternalizer<Integer>()
+	{
+		@Override
+		public void save(DataOutput out, Integer value) throws IOException
+		{
+			out.writeByte(value);
+		}
+
+		@Override
+		public Integer read(DataInput in) throws IOException
+		{
+			return (int) in.readByte();
+		}
+	};
+
+	private static final FileBasedIndex.InputFilter INPUT_FILTER = new FileBasedIndex.InputFilter()
+	{
+		@Override
+		public boolean acceptInput(VirtualFile file)
+		{
+			return file.getFileType() == NapileFileType.INSTANCE;
+		}
+	};
+
+	@NotNull
+	@Override
+	public ID<String, Integer> getName()
+	{
+		return NAME;
+	}
+
+	@NotNull
+	@Override
+	public DataIndexer<String, Integer, FileContent> getIndexer()
+	{
+		return INDEXER;
+	}
+
+	@Override
+	public KeyDescriptor<String> getKeyDescriptor()
+	{
+		return new EnumeratorStringDescriptor();
+	}
+
+	@Override
+	public DataExternalizer<Integer> getValueExternalizer()
+	{
+		return EXTERNALIZER;
+	}
+
+	@Override
+	public FileBasedIndex.InputFilter getInputFilter()
+	{
+		return INPUT_FILTER;
+	}
+
+	@Override
+	public boolean dependsOnFileContent()
+	{
+		return true;
+	}
+
+	@Override
+	public int getVersion()
+	{
+		return 1;
+	}
+}
@@ -17,6 +17,7 @@
 package org.napile.idea.plugin.stubindex;
 
 import org.napile.compiler.lang.psi.NapileClass;
+import org.napile.compiler.lang.psi.NapileNamedDeclaration;
 import org.napile.compiler.lang.psi.NapileNamedMethodOrMacro;
 import org.napile.compiler.lang.psi.NapileVariable;
 import com.intellij.psi.stubs.StubIndexKey;
@@ -28,6 +29,8 @@ public interface NapileIndexKeys
 {
 	StubIndexKey<String, NapileClass> FQN_KEY = StubIndexKey.createIndexKey("napile.fqn");
 
+	StubIndexKey<String, NapileClass> PACKAGE_KEY = StubIndexKey.createIndexKey("napile.package");
+
 	StubIndexKey<String, NapileClass> CLASSES_SHORT_NAME_KEY = StubIndexKey.createIndexKey("napile.classes.short.name");
 
 	StubIndexKey<String, NapileNamedMethodOrMacro> METHODS_SHORT_NAME_KEY = StubIndexKey.createIndexKey("napile.methods.short.name");
@@ -35,5 +38,7 @@ public interface NapileIndexKeys
 	StubIndexKey<String, NapileNamedMethodOrMacro> MACROS_SHORT_NAME_KEY = StubIndexKey.createIndexKey("napile.macros.short.name");
 
 	StubIndexKey<String, NapileVariable> VARIABLES_SHORT_NAME_KEY = StubIndexKey.createIndexKey("napile.variables.short.name");
+
+	StubIndexKey<String, NapileNamedDeclaration> STATIC_DECLARATIONS_KEY = StubIndexKey.createIndexKey("napile.static.declarations.short.name");
 }
 
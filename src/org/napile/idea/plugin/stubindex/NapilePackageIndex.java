@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.stubindex;
+
+import java.util.Collection;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.lang.psi.NapileClass;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.StringStubIndexExtension;
+import com.intellij.psi.stubs.StubIndexKey;
+
+/**
+ * Package fq name -> top level classes of package
+ *
+ * @author VISTALL
+ * @since 12:30/04.05.13
+ */
+public class NapilePackageIndex extends StringStubIndexExtension<NapileClass>
+{
+	private static final NapilePackageIndex ourInstance = new NapilePackageIndex();
+
+	public static NapilePackageIndex getInstance()
+	{
+		return ourInstance;
+	}
+
+	@NotNull
+	@Override
+	public StubIndexKey<String, NapileClass> getKey()
+	{
+		return NapileIndexKeys.PACKAGE_KEY;
+	}
+
+	@Override
+	public int getVersion()
+	{
+		return super.getVersion() + 1;
+	}
+
+	@Override
+	public Collection<NapileClass> get(final String packageFqName, final Project project, @NotNull final GlobalSearchScope scope)
+	{
+		return super.get(packageFqName, project, new NapileSourceFilterScope(scope));
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.stubindex;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.Modifier;
+import org.napile.asm.lib.NapileLangPackage;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.AbstractMemberNode;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.MethodNode;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.compiler.NXmlFileType;
+import org.napile.compiler.NapileFileType;
+import org.napile.compiler.lang.lexer.NapileTokens;
+import org.napile.compiler.lang.psi.NapileCallParameter;
+import org.napile.compiler.lang.psi.NapileCallParameterAsVariable;
+import org.napile.compiler.lang.psi.NapileClass;
+import org.napile.compiler.lang.psi.NapileDeclaration;
+import org.napile.compiler.lang.psi.NapileNamedMethod;
+import org.napile.compiler.lang.psi.NapileTypeElement;
+import org.napile.compiler.lang.psi.NapileTypeReference;
+import org.napile.compiler.lang.psi.NapileUserType;
+import org.napile.idea.plugin.psi.file.NXmlClassNodeReader;
+import com.intellij.openapi.util.Comparing;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+
+/**
+ * FqName of class -> files, where class have run point - method <code>static meth main(val arg : Array&lt;String&gt;)</code>.
+ * Same check as {@link org.napile.compiler.util.RunUtil#isRunPoint}, but by psi of sources and class nodes of libraries,
+ * so runnable classes are found without analyze
+ *
+ * @author VISTALL
+ * @since 13:55/04.05.13
+ */
+public class NapileRunPointIndex extends ScalarIndexExtension<String>
+{
+	public static final ID<String, Void> NAME = ID.create("napile.run.points");
+
+	private static final String MAIN_NAME = "main";
+
+	private static final DataIndexer<String, Void, FileContent> INDEXER = new DataIndexer<String, Void, FileContent>()
+	{
+		@NotNull
+		@Override
+		public Map<String, Void> map(FileContent inputData)
+		{
+			if(inputData.getFileType() == NXmlFileType.INSTANCE)
+				return mapClassNode(inputData);
+
+			PsiFile psiFile = inputData.getPsiFile();
+
+			Map<String, Void> map = new HashMap<String, Void>();
+			for(NapileClass napileClass : PsiTreeUtil.findChildrenOfType(psiFile, NapileClass.class))
+			{
+				FqName fqName = napileClass.getFqName();
+				if(fqName != null && hasRunPoint(napileClass))
+					map.put(fqName.getFqName(), null);
+			}
+			return map;
+		}
+	};
+
+	@NotNull
+	private static Map<String, Void> mapClassNode(FileContent inputData)
+	{
+		ClassNode classNode = NXmlClassNodeReader.getClassNode(inputData);
+		if(classNode == null)
+			return Collections.emptyMap();
+
+		for(AbstractMemberNode<?> memberNode : classNode.getMembers())
+		{
+			if(memberNode instanceof MethodNode && isRunPoint((MethodNode) memberNode))
+				return Collections.<String, Void>singletonMap(classNode.name.getFqName(), null);
+		}
+		return Collections.emptyMap();
+	}
+
+	public static boolean hasRunPoint(@NotNull NapileClass napileClass)
+	{
+		for(NapileDeclaration declaration : napileClass.getDeclarations())
+		{
+			if(declaration instanceof NapileNamedMethod && isRunPoint((NapileNamedMethod) declaration))
+				return true;
+		}
+		return false;
+	}
+
+	public static boolean isRunPoint(@NotNull NapileNamedMethod method)
+	{
+		if(!MAIN_NAME.equals(method.getName()) || !method.hasModifier(NapileTokens.STATIC_KEYWORD))
+			return false;
+
+		NapileTypeReference returnTypeRef = method.getReturnTypeRef();
+		if(returnTypeRef != null && !isType(returnTypeRef, NapileLangPackage.NULL))
+			return false;
+
+		NapileCallParameter[] parameters = method.getCallParameters();
+		if(parameters.length != 1 || !(parameters[0] instanceof NapileCallParameterAsVariable))
+			return false;
+
+		NapileTypeReference typeReference = ((NapileCallParameterAsVariable) parameters[0]).getTypeReference();
+		if(typeReference == null || !isType(typeReference, NapileLangPackage.ARRAY))
+			return false;
+
+		List<? extends NapileTypeReference> typeArguments = typeReference.getTypeElement().getTypeArguments();
+		return typeArguments.size() == 1 && isType(typeArguments.get(0), NapileLangPackage.STRING);
+	}
+
+	private static boolean isType(@NotNull NapileTypeReference typeReference, @NotNull FqName fqName)
+	{
+		NapileTypeElement typeElement = typeReference.getTypeElement();
+		if(!(typeElement instanceof NapileUserType))
+			return false;
+
+		NapileUserType userType = (NapileUserType) typeElement;
+		if(!fqName.shortName().getName().equals(userType.getReferencedName()))
+			return false;
+
+		NapileUserType qualifier = userType.getQualifier();
+		return qualifier == null || fqName.parent().getFqName().equals(qualifier.getText());
+	}
+
+	private static boolean isRunPoint(@NotNull MethodNode methodNode)
+	{
+		if(!MAIN_NAME.equals(methodNode.name.getName()) || !ArrayUtil.contains(Modifier.STATIC, methodNode.modifiers))
+			return false;
+
+		if(!Comparing.equal(getClassName(methodNode.returnType), NapileLangPackage.NULL) || methodNode.parameters.size() != 1)
+			return false;
+
+		TypeNode typeNode = methodNode.parameters.get(0).returnType;
+		return Comparing.equal(getClassName(typeNode), NapileLangPackage.ARRAY) && typeNode.arguments.size() == 1 && Comparing.equal(getClassName(typeNode.arguments.get(0)), NapileLangPackage.STRING);
+	}
+
+	@Nullable
+	private static FqName getClassName(@Nullable TypeNode typeNode)
+	{
+		if(typeNode == null || !(typeNode.typeConstructorNode instanceof ClassTypeNode))
+			return null;
+		return ((ClassTypeNode) typeNode.typeConstructorNode).className;
+	}
+
+	private static final FileBasedIndex.InputFilter INPUT_FILTER = new FileBasedIndex.InputFilter()
+	{
+		@Override
+		public boolean acceptInput(VirtualFile file)
+		{
+			return file.getFileType() == NapileFileType.INSTANCE || file.getFileType() == NXmlFileType.INSTANCE;
+		}
+	};
+
+	@NotNull
+	@Override
+	public ID<String, Void> getName()
+	{
+		return NAME;
+	}
+
+	@NotNull
+	@Override
+	public DataIndexer<String, Void, FileContent> getIndexer()
+	{
+		return INDEXER;
+	}
+
+	@Override
+	public KeyDescriptor<String> getKeyDescriptor()
+	{
+		return new EnumeratorStringDescriptor();
+	}
+
+	@Override
+	public FileBasedIndex.InputFilter getInputFilter()
+	{
+		return INPUT_FILTER;
+	}
+
+	@Override
+	public boolean dependsOnFileContent()
+	{
+		return true;
+	}
+
+	@Override
+	public int getVersion()
+	{
+		return 0;
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.stubindex;
+
+import java.util.Collection;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.lang.psi.NapileNamedDeclaration;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.StringStubIndexExtension;
+import com.intellij.psi.stubs.StubIndexKey;
+
+/**
+ * Short name -> top level classes, and methods and macros of top level classes, which can be imported - only static and not local.
+ * Modifiers are taken from modifier list stubs, which are child stubs of class, method and macro stubs, for sources and libraries
+ *
+ * @author VISTALL
+ * @since 15:40/03.05.13
+ */
+public class NapileStaticDeclarationIndex extends StringStubIndexExtension<NapileNamedDeclaration>
+{
+	private static final NapileStaticDeclarationIndex ourInstance = new NapileStaticDeclarationIndex();
+
+	public static NapileStaticDeclarationIndex getInstance()
+	{
+		return ourInstance;
+	}
+
+	@NotNull
+	@Override
+	public StubIndexKey<String, NapileNamedDeclaration> getKey()
+	{
+		return NapileIndexKeys.STATIC_DECLARATIONS_KEY;
+	}
+
+	@Override
+	public Collection<NapileNamedDeclaration> get(final String s, final Project project, @NotNull final GlobalSearchScope scope)
+	{
+		return super.get(s, project, new NapileSourceFilterScope(scope));
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.idea.plugin.stubindex;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.compiler.NXmlFileType;
+import org.napile.compiler.NapileFileType;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.idea.plugin.psi.file.NXmlClassNodeReader;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+
+/**
+ * Package fq name -> short names of direct sub packages. Root package has empty name.
+ * File in package 'a.b.c' gives '' -> [a], 'a' -> [b], 'a.b' -> [c]
+ *
+ * @author VISTALL
+ * @since 12:45/04.05.13
+ */
+public class NapileSubPackageIndex extends FileBasedIndexExtension<String, List<String>>
+{
+	public static final ID<String, List<String>> NAME = ID.create("napile.sub.packages");
+
+	private static final DataIndexer<String, List<String>, FileContent> INDEXER = new DataIndexer<String, List<String>, FileContent>()
+	{
+		@NotNull
+		@Override
+		public Map<String, List<String>> map(FileContent inputData)
+		{
+			FqName packageFqName = getPackageFqName(inputData);
+			if(packageFqName == null || packageFqName.isRoot())
+				return Collections.emptyMap();
+
+			Map<String, List<String>> map = new HashMap<String, List<String>>();
+			for(FqName fqName = packageFqName; !fqName.isRoot(); fqName = fqName.parent())
+				map.put(fqName.parent().getFqName(), Collections.singletonList(fqName.shortName().getName()));
+			return map;
+		}
+	};
+
+	@Nullable
+	private static FqName getPackageFqName(FileContent inputData)
+	{
+		if(inputData.getFileType() == NXmlFileType.INSTANCE)
+		{
+			ClassNode classNode = NXmlClassNodeReader.getClassNode(inputData);
+			return classNode == null ? null : classNode.name.parent();
+		}
+
+		PsiFile psiFile = inputData.getPsiFile();
+		return psiFile instanceof NapileFile ? ((NapileFile) psiFile).getPackageFqName() : null;
+	}
+
+	private static final DataExternalizer<List<String>> EXTERNALIZER = new DataExternalizer<List<String>>()
+	{
+		@Override
+		public void save(DataOutput out, List<String> value) throws IOException
+		{
+			out.writeInt(value.size());
+			for(String name : value)
+				IOUtil.writeUTF(out, name);
+		}
+
+		@Override
+		public List<String> read(DataInput in) throws IOException
+		{
+			int size = in.readInt();
+			List<String> list = new ArrayList<String>(size);
+			for(int i = 0; i < size; i++)
+				list.add(IOUtil.readUTF(in));
+			return list;
+		}
+	};
+
+	private static final FileBasedIndex.InputFilter INPUT_FILTER = new FileBasedIndex.InputFilter()
+	{
+		@Override
+		public boolean acceptInput(VirtualFile file)
+		{
+			return file.getFileType() == NapileFileType.INSTANCE || file.getFileType() == NXmlFileType.INSTANCE;
+		}
+	};
+
+	@NotNull
+	@Override
+	public ID<String, List<String>> getName()
+	{
+		return NAME;
+	}
+
+	@NotNull
+	@Override
+	public DataIndexer<String, List<String>, FileContent> getIndexer()
+	{
+		return INDEXER;
+	}
+
+	@Override
+	public KeyDescriptor<String> getKeyDescriptor()
+	{
+		return new EnumeratorStringDescriptor();
+	}
+
+	@Override
+	public DataExternalizer<List<String>> getValueExternalizer()
+	{
+		return EXTERNALIZER;
+	}
+
+	@Override
+	public FileBasedIndex.InputFilter getInputFilter()
+	{
+		return INPUT_FILTER;
+	}
+
+	@Override
+	public boolean dependsOnFileContent()
+	{
+		return true;
+	}
+
+	@Override
+	public int getVersion()
+	{
+		return 0;
+	}
+}
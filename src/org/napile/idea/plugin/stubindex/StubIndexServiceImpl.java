@@ -16,13 +16,20 @@
 
 package org.napile.idea.plugin.stubindex;
 
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.compiler.lang.lexer.NapileTokens;
 import org.napile.compiler.lang.psi.stubs.NapilePsiClassStub;
 import org.napile.compiler.lang.psi.stubs.NapilePsiEnumValueStub;
+import org.napile.compiler.lang.psi.stubs.NapilePsiFileStub;
 import org.napile.compiler.lang.psi.stubs.NapilePsiMacroStub;
 import org.napile.compiler.lang.psi.stubs.NapilePsiMethodStub;
+import org.napile.compiler.lang.psi.stubs.NapilePsiModifierListStub;
 import org.napile.compiler.lang.psi.stubs.NapilePsiVariableStub;
+import org.napile.compiler.lang.psi.stubs.elements.NapileStubElementTypes;
 import org.napile.compiler.lang.psi.stubs.elements.StubIndexService;
 import com.intellij.psi.stubs.IndexSink;
+import com.intellij.psi.stubs.StubElement;
 
 /**
  * @author Nikolay Krasko
@@ -36,24 +43,39 @@ public class StubIndexServiceImpl implements StubIndexService
 		if(name != null)
 			sink.occurrence(NapileIndexKeys.CLASSES_SHORT_NAME_KEY, name);
 
-		String fqn = stub.getFqName().getFqName();
-		sink.occurrence(NapileIndexKeys.FQN_KEY, fqn);
+		FqName fqName = stub.getFqName();
+		sink.occurrence(NapileIndexKeys.FQN_KEY, fqName.getFqName());
+		// parent of nested class fq name is outer class, not package
+		if(stub.getParentStub() instanceof NapilePsiFileStub)
+		{
+			sink.occurrence(NapileIndexKeys.PACKAGE_KEY, fqName.parent().getFqName());
+			if(name != null && isImportable(stub))
+				sink.occurrence(NapileIndexKeys.STATIC_DECLARATIONS_KEY, name);
+		}
 	}
 
 	@Override
 	public void indexMethod(NapilePsiMethodStub stub, IndexSink sink)
 	{
 		String name = stub.getName();
-		if(name != null)
-			sink.occurrence(NapileIndexKeys.METHODS_SHORT_NAME_KEY, name);
+		if(name == null)
+			return;
+
+		sink.occurrence(NapileIndexKeys.METHODS_SHORT_NAME_KEY, name);
+		if(isImportableMember(stub))
+			sink.occurrence(NapileIndexKeys.STATIC_DECLARATIONS_KEY, name);
 	}
 
 	@Override
 	public void indexMacro(NapilePsiMacroStub stub, IndexSink sink)
 	{
 		String name = stub.getName();
-		if(name != null)
-			sink.occurrence(NapileIndexKeys.MACROS_SHORT_NAME_KEY, name);
+		if(name == null)
+			return;
+
+		sink.occurrence(NapileIndexKeys.MACROS_SHORT_NAME_KEY, name);
+		if(isImportableMember(stub))
+			sink.occurrence(NapileIndexKeys.STATIC_DECLARATIONS_KEY, name);
 	}
 
 	@Override
@@ -71,4 +93,23 @@ public class StubIndexServiceImpl implements StubIndexService
 		if(name != null)
 			sink.occurrence(NapileIndexKeys.VARIABLES_SHORT_NAME_KEY, name);
 	}
+
+	/**
+	 * Only static declarations can be imported, local declarations are not visible from other files
+	 */
+	private static boolean isImportable(@NotNull StubElement<?> stub)
+	{
+		StubElement<?> modifierList = stub.findChildStubByType(NapileStubElementTypes.MODIFIER_LIST);
+		if(!(modifierList instanceof NapilePsiModifierListStub))
+			return false;
+
+		NapilePsiModifierListStub modifierListStub = (NapilePsiModifierListStub) modifierList;
+		return modifierListStub.hasModifier(NapileTokens.STATIC_KEYWORD) && !modifierListStub.hasModifier(NapileTokens.LOCAL_KEYWORD);
+	}
+
+	private static boolean isImportableMember(@NotNull StubElement<?> stub)
+	{
+		StubElement<?> parentStub = stub.getParentStub();
+		return parentStub instanceof NapilePsiClassStub && parentStub.getParentStub() instanceof NapilePsiFileStub && isImportable(stub);
+	}
 }
@@ -2,14 +2,15 @@ package org.napile.idea.plugin.util;
 
 import org.jetbrains.annotations.NotNull;
 import org.napile.asm.lib.NapileAnnotationPackage;
+import org.napile.asm.resolve.name.FqName;
 import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
-import org.napile.compiler.lang.descriptors.MethodDescriptor;
-import org.napile.compiler.lang.descriptors.MutableClassDescriptor;
 import org.napile.compiler.lang.psi.NapileClassLike;
 import org.napile.compiler.lang.psi.NapileDeclaration;
 import org.napile.compiler.lang.resolve.AnnotationUtils;
 import org.napile.compiler.util.RunUtil;
+import org.napile.idea.plugin.caches.NapileAnnotationSearch;
 import org.napile.idea.plugin.module.ModuleAnalyzerUtil;
+import com.intellij.openapi.vfs.VirtualFile;
 
 /**
  * @author VISTALL
@@ -29,13 +30,11 @@ public class IdePsiUtil extends RunUtil
 
 	public static boolean hasRunMethod(@NotNull NapileClassLike classLike)
 	{
-		MutableClassDescriptor descriptor = ModuleAnalyzerUtil.getDescriptorOrAnalyze(classLike);
-		if(descriptor == null)
+		FqName fqName = classLike.getFqName();
+		VirtualFile virtualFile = classLike.getContainingFile().getVirtualFile();
+		if(fqName == null || virtualFile == null)
 			return false;
 
-		for(MethodDescriptor methodDescriptor : descriptor.getMethods())
-			if(isRunPoint(methodDescriptor))
-				return true;
-		return false;
+		return NapileAnnotationSearch.hasRunPoint(classLike.getProject(), fqName, virtualFile);
 	}
 }